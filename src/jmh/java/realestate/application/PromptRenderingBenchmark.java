@@ -0,0 +1,57 @@
+package realestate.application;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import realestate.domain.ProspectState;
+import realestate.domain.Threads;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering the emails into the agent prompt, compared with the former {@code reduce(String::concat)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptRenderingBenchmark {
+
+  @Param({"1", "10", "100", "500"})
+  public int messages;
+
+  private List<ProspectState.Message> thread;
+  private ProspectState.ClientDetails knownDetails;
+
+  @Setup
+  public void setUp() {
+    thread = Threads.prospect(messages).unreadMessages();
+    knownDetails = new ProspectState.ClientDetails("John Doe", "john@example.com", null, "Porto, Portugal", null, "rent");
+  }
+
+  @Benchmark
+  public String concatReduce() {
+    return thread.stream().map(ProspectState.Message::toString).reduce("", String::concat);
+  }
+
+  @Benchmark
+  public String renderMessages() {
+    return CustomerServiceAgent.renderMessages(ProspectState.ClientDetails.EMPTY, thread);
+  }
+
+  @Benchmark
+  public String renderMessagesWithKnownDetails() {
+    return CustomerServiceAgent.renderMessages(knownDetails, thread);
+  }
+}
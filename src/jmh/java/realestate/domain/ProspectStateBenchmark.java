@@ -0,0 +1,89 @@
+package realestate.domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link ProspectState} transitions for threads of different lengths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProspectStateBenchmark {
+
+  @Param({"1", "10", "100", "500"})
+  public int messages;
+
+  private ProspectState state;
+  private ProspectState.Message message;
+
+  @Setup
+  public void setUp() {
+    state = Threads.prospect(messages);
+    message = Threads.message(messages);
+  }
+
+  /**
+   * A state nobody appended to yet, like the one a workflow holds. Appending again to the shared
+   * state would take the copy path after the first call.
+   */
+  @State(Scope.Thread)
+  public static class Fresh {
+    private ProspectState state;
+
+    @Setup(Level.Invocation)
+    public void setUp(ProspectStateBenchmark benchmark) {
+      state = Threads.prospect(benchmark.messages);
+    }
+  }
+
+  @Benchmark
+  public ProspectState addUnreadMessage(Fresh fresh) {
+    return fresh.state.addUnreadMessage(message);
+  }
+
+  @Benchmark
+  public ProspectState waitingReply() {
+    return state.waitingReply();
+  }
+
+  @Benchmark
+  public ProspectState closed() {
+    return state.closed();
+  }
+
+  @Benchmark
+  public ProspectState followUpRequired() {
+    return state.followUpRequired();
+  }
+
+  @Benchmark
+  public ProspectState withEmail() {
+    return state.withEmail("other@example.com");
+  }
+
+  @Benchmark
+  public ProspectState markAllRead() {
+    return state.markAllRead();
+  }
+
+  @Benchmark
+  public String messageToString() {
+    return message.toString();
+  }
+}
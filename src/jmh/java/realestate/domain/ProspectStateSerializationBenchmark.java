@@ -0,0 +1,54 @@
+package realestate.domain;
+
+import akka.javasdk.JsonSupport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the workflow state, done by the runtime on every step transition.
+ * Uses the same object mapper as the Akka runtime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProspectStateSerializationBenchmark {
+
+  @Param({"1", "10", "100", "500"})
+  public int messages;
+
+  private ObjectMapper mapper;
+  private ProspectState state;
+  private byte[] json;
+
+  @Setup
+  public void setUp() throws Exception {
+    mapper = JsonSupport.getObjectMapper();
+    state = Threads.prospect(messages);
+    json = mapper.writeValueAsBytes(state);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws Exception {
+    return mapper.writeValueAsBytes(state);
+  }
+
+  @Benchmark
+  public ProspectState deserialize() throws Exception {
+    return mapper.readValue(json, ProspectState.class);
+  }
+}
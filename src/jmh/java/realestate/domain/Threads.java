@@ -0,0 +1,25 @@
+package realestate.domain;
+
+/**
+ * Synthetic email threads used by the benchmarks.
+ */
+public final class Threads {
+
+  private Threads() {}
+
+  public static ProspectState.Message message(int i) {
+    return ProspectState.Message.UserMessage(
+        "john@example.com",
+        "Re: Looking to rent T2 in Porto (" + i + ")",
+        "Hello, I am still looking to rent a T2 in Porto. My name is John Doe and my phone number is 911111111. "
+            + "I need 2 bedrooms, ideally close to the metro, and my budget is 1200 euros per month. Message " + i + ".");
+  }
+
+  public static ProspectState prospect(int messages) {
+    var state = ProspectState.EMPTY.withEmail("john@example.com");
+    for (int i = 0; i < messages; i++) {
+      state = state.addUnreadMessage(message(i));
+    }
+    return state;
+  }
+}
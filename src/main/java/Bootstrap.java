@@ -1,19 +1,74 @@
 import akka.javasdk.DependencyProvider;
 import akka.javasdk.ServiceSetup;
 import akka.javasdk.annotations.Setup;
+import akka.javasdk.client.ComponentClient;
+import akka.javasdk.timer.TimerScheduler;
 //import dev.langchain4j.model.ollama.OllamaChatModel;
 import com.typesafe.config.Config;
+import realestate.application.AgentResponseCache;
+import realestate.application.AgentToolCalls;
+import realestate.application.BatchingEmailClient;
 import realestate.application.EmailClient;
+import realestate.application.KnownClients;
+import realestate.application.FollowUpSweeper;
+import realestate.application.LlmCircuitBreakers;
+import realestate.application.LoggingEmailClient;
+import realestate.application.Metrics;
+import realestate.application.ModelRouter;
+import realestate.application.ServiceGauges;
+import realestate.application.SmtpEmailClient;
+import realestate.application.Tenants;
 
 @Setup
 public class Bootstrap implements ServiceSetup {
 
-  public Bootstrap(Config config) {
+  private final Metrics metrics = new Metrics();
+  private final AgentToolCalls agentToolCalls = new AgentToolCalls();
+  private final AgentResponseCache agentResponseCache;
+  private final KnownClients knownClients;
+  private final Tenants tenants;
+  private final LlmCircuitBreakers llmCircuitBreakers;
+  private final ModelRouter modelRouter;
+  private final ServiceGauges serviceGauges;
+  private final EmailClient emailClient;
+  private final ComponentClient componentClient;
+  private final TimerScheduler timerScheduler;
+  private final Config config;
+
+  public Bootstrap(Config config, ComponentClient componentClient, TimerScheduler timerScheduler) {
     if (config.getString("akka.javasdk.agent.model-provider").equals("openai")
       && config.getString("akka.javasdk.agent.openai.api-key").isBlank()) {
       throw new IllegalStateException(
         "No API keys found. Make sure you have OPENAI_API_KEY defined as environment variable, or change the model provider configuration in application.conf to use a different LLM.");
     }
+    this.config = config;
+    this.componentClient = componentClient;
+    this.timerScheduler = timerScheduler;
+    this.agentResponseCache = new AgentResponseCache(config, metrics);
+    this.knownClients = new KnownClients(config, metrics);
+    this.tenants = new Tenants(config);
+    this.llmCircuitBreakers = new LlmCircuitBreakers(config, metrics);
+    this.modelRouter = new ModelRouter(config, metrics);
+    this.serviceGauges = new ServiceGauges(config, componentClient, metrics, tenants);
+    // a single client for the whole service, so that its connections are reused
+    EmailClient client = switch (config.getString("realestate.email.client")) {
+      case "smtp" -> new SmtpEmailClient(SmtpEmailClient.Settings.of(config));
+      case "logging" -> new LoggingEmailClient();
+      default -> throw new IllegalStateException("Unknown email client: " + config.getString("realestate.email.client"));
+    };
+    // each outbox has the emails of one customer, batches are made of the emails of many outboxes
+    var outbox = config.getConfig("realestate.email.outbox");
+    this.emailClient = new BatchingEmailClient(
+        client,
+        outbox.getInt("max-batch"),
+        outbox.getDuration("linger"),
+        outbox.getInt("senders"));
+  }
+
+  @Override
+  public void onStartup() {
+    // every node schedules it, the timer name is unique so there is still a single sweeper
+    FollowUpSweeper.schedule(timerScheduler, componentClient, config.getDuration("realestate.follow-up.sweep-interval"));
   }
 
   @Override
@@ -23,7 +78,31 @@ public class Bootstrap implements ServiceSetup {
       @Override
       public <T> T getDependency(Class<T> aClass) {
         if (aClass.equals(EmailClient.class)) {
-          return (T) new EmailClient();
+          return (T) emailClient;
+        }
+        if (aClass.equals(Metrics.class)) {
+          return (T) metrics;
+        }
+        if (aClass.equals(AgentToolCalls.class)) {
+          return (T) agentToolCalls;
+        }
+        if (aClass.equals(AgentResponseCache.class)) {
+          return (T) agentResponseCache;
+        }
+        if (aClass.equals(KnownClients.class)) {
+          return (T) knownClients;
+        }
+        if (aClass.equals(Tenants.class)) {
+          return (T) tenants;
+        }
+        if (aClass.equals(LlmCircuitBreakers.class)) {
+          return (T) llmCircuitBreakers;
+        }
+        if (aClass.equals(ModelRouter.class)) {
+          return (T) modelRouter;
+        }
+        if (aClass.equals(ServiceGauges.class)) {
+          return (T) serviceGauges;
         }
         return null;
       }
@@ -0,0 +1,165 @@
+package realestate.api;
+
+import akka.http.javadsl.model.ContentType;
+import akka.http.javadsl.model.HttpCharsets;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.MediaTypes;
+import akka.javasdk.JsonSupport;
+import akka.javasdk.annotations.Acl;
+import akka.javasdk.annotations.http.Get;
+import akka.javasdk.annotations.http.HttpEndpoint;
+import akka.javasdk.client.ComponentClient;
+import akka.javasdk.http.AbstractHttpEndpoint;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import realestate.application.ClientsByPropertyView;
+import realestate.application.Tenants;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+import static realestate.application.ClientsByPropertyView.normalize;
+
+/**
+ * Paginated queries over the collected clients. Pages are requested with the optional
+ * {@code pageSize} and {@code pageToken} query parameters, the token being the
+ * {@code nextPageToken} of the previous page. Bulk reads use the streaming export instead.
+ * Clients are those of the agency in the optional {@code agency} query parameter, the default
+ * agency when absent. They return the details of the clients, so only other services of the
+ * project can call them.
+ */
+@Acl(allow = @Acl.Matcher(service = "*"))
+@HttpEndpoint("/clients")
+public class ClientEndpoint extends AbstractHttpEndpoint {
+
+  private static final int DEFAULT_PAGE_SIZE = 50;
+  private static final int MAX_PAGE_SIZE = 500;
+
+  private static final ContentType NDJSON =
+      MediaTypes.applicationWithFixedCharset("x-ndjson", HttpCharsets.UTF_8).toContentType();
+  private static final ContentType CSV = MediaTypes.TEXT_CSV.toContentType(HttpCharsets.UTF_8);
+  private static final String CSV_HEADER = "email,name,phone,location,propertyType,transactionType,updatedAt\n";
+  private static final ByteString NEW_LINE = ByteString.fromString("\n");
+
+  private final ComponentClient componentClient;
+  private final Tenants tenants;
+
+  public ClientEndpoint(ComponentClient componentClient, Tenants tenants) {
+    this.componentClient = componentClient;
+    this.tenants = tenants;
+  }
+
+  @Get("/by-city/{city}")
+  public ClientsByPropertyView.ClientsPage byCity(String city) {
+    return componentClient.forView()
+        .method(ClientsByPropertyView::getByCity)
+        .invoke(new ClientsByPropertyView.ByCity(agency(), normalize(city), pageToken(), pageSize()));
+  }
+
+  @Get("/by-property-type/{propertyType}")
+  public ClientsByPropertyView.ClientsPage byPropertyType(String propertyType) {
+    return componentClient.forView()
+        .method(ClientsByPropertyView::getByPropertyType)
+        .invoke(new ClientsByPropertyView.ByPropertyType(agency(), normalize(propertyType), pageToken(), pageSize()));
+  }
+
+  @Get("/by-transaction-type/{transactionType}")
+  public ClientsByPropertyView.ClientsPage byTransactionType(String transactionType) {
+    return componentClient.forView()
+        .method(ClientsByPropertyView::getByTransactionType)
+        .invoke(new ClientsByPropertyView.ByTransactionType(agency(), normalize(transactionType), pageToken(), pageSize()));
+  }
+
+  @Get("/search/{city}/{propertyType}/{transactionType}")
+  public ClientsByPropertyView.ClientsPage search(String city, String propertyType, String transactionType) {
+    return componentClient.forView()
+        .method(ClientsByPropertyView::getByAll)
+        .invoke(new ClientsByPropertyView.ByAll(
+            agency(),
+            normalize(city),
+            normalize(propertyType),
+            normalize(transactionType),
+            pageToken(),
+            pageSize()));
+  }
+
+  /**
+   * Streams all clients updated at or after the {@code updatedSince} query parameter (an ISO-8601
+   * instant, everything when absent) as newline delimited JSON, or as CSV with {@code format=csv}.
+   * Rows come oldest first, so the {@code updatedAt} of the last row is the cursor for the next pull.
+   */
+  @Get("/export")
+  public HttpResponse export() {
+    var updatedSince = requestContext().queryParams().getString("updatedSince")
+        .map(ClientEndpoint::parseInstant)
+        .orElse(0L);
+    var format = requestContext().queryParams().getString("format").orElse("ndjson");
+
+    var rows = componentClient.forView()
+        .stream(ClientsByPropertyView::streamUpdatedSince)
+        .source(new ClientsByPropertyView.UpdatedSince(agency(), updatedSince));
+
+    return switch (format) {
+      case "ndjson" -> HttpResponse.create().withEntity(HttpEntities.createChunked(
+          NDJSON,
+          rows.map(ClientEndpoint::toJsonLine)));
+      case "csv" -> HttpResponse.create().withEntity(HttpEntities.createChunked(
+          CSV,
+          Source.single(ByteString.fromString(CSV_HEADER)).concat(rows.map(ClientEndpoint::toCsvLine))));
+      default -> throw new IllegalArgumentException("Unknown format: " + format + ", expected ndjson or csv");
+    };
+  }
+
+  private static long parseInstant(String value) {
+    try {
+      return Instant.parse(value).toEpochMilli();
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("updatedSince must be an ISO-8601 instant, e.g. 2025-01-31T00:00:00Z");
+    }
+  }
+
+  private static ByteString toJsonLine(ClientsByPropertyView.ClientRow row) {
+    try {
+      return ByteString.fromArray(JsonSupport.getObjectMapper().writeValueAsBytes(row)).concat(NEW_LINE);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize client " + row.email(), e);
+    }
+  }
+
+  private static ByteString toCsvLine(ClientsByPropertyView.ClientRow row) {
+    return ByteString.fromString(String.join(",",
+        csv(row.email()),
+        csv(row.name()),
+        csv(row.phone()),
+        csv(row.location()),
+        csv(row.propertyType()),
+        csv(row.transactionType()),
+        csv(Instant.ofEpochMilli(row.updatedAt()).toString())) + "\n");
+  }
+
+  static String csv(String value) {
+    if (value == null) return "";
+    if (value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) return value;
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  private String agency() {
+    var agency = requestContext().queryParams().getString("agency").orElse(Tenants.DEFAULT);
+    if (!tenants.exists(agency))
+      throw new IllegalArgumentException("Unknown agency: " + agency);
+    return agency;
+  }
+
+  private String pageToken() {
+    return requestContext().queryParams().getString("pageToken").orElse("");
+  }
+
+  private int pageSize() {
+    var pageSize = requestContext().queryParams().getInteger("pageSize").orElse(DEFAULT_PAGE_SIZE);
+    if (pageSize < 1 || pageSize > MAX_PAGE_SIZE)
+      throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+    return pageSize;
+  }
+}
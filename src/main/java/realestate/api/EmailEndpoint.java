@@ -1,16 +1,31 @@
 package realestate.api;
 
+import akka.http.javadsl.model.HttpEntity;
 import akka.http.javadsl.model.HttpResponse;
+import akka.javasdk.JsonSupport;
 import akka.javasdk.annotations.Acl;
 import akka.javasdk.annotations.http.Get;
 import akka.javasdk.annotations.http.HttpEndpoint;
 import akka.javasdk.annotations.http.Post;
 import akka.javasdk.client.ComponentClient;
 import akka.javasdk.http.HttpResponses;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.typesafe.config.Config;
 import realestate.application.ClientInfoEntity;
 import realestate.application.ProspectProcessingWorkflow;
+import realestate.application.Tenants;
 import realestate.domain.ClientState;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * This is a public API that allows to simulate the arrival of a new email.
  */
@@ -19,31 +34,197 @@ import realestate.domain.ClientState;
 public class EmailEndpoint {
 
   private final ComponentClient componentClient;
+  private final Tenants tenants;
+  private final int maxBatchSize;
+  private final int maxConcurrentDispatches;
+
+  /**
+   * @param messageId optional Message-ID of the email, redelivered emails are ignored. Without it
+   *                  emails with the same content as a recent one are considered redeliveries.
+   * @param agency    optional agency the email was sent to, one of {@code realestate.tenants}
+   */
+  public record NewEmailReq(String sender, String subject, String content, String messageId, String agency) {
+    public NewEmailReq(String sender, String subject, String content, String messageId) {
+      this(sender, subject, content, messageId, null);
+    }
+  }
+
+  public enum BatchItemStatus {
+    ACCEPTED,
+    REJECTED
+  }
 
-  public record NewEmailReq(String sender, String subject, String content) {}
+  /**
+   * Outcome for a single email of a batch, {@code index} is its position in the request.
+   */
+  public record BatchItemResult(int index, String sender, BatchItemStatus status, String error) {
+    static BatchItemResult accepted(int index, String sender) {
+      return new BatchItemResult(index, sender, BatchItemStatus.ACCEPTED, null);
+    }
+
+    static BatchItemResult rejected(int index, String sender, String error) {
+      return new BatchItemResult(index, sender, BatchItemStatus.REJECTED, error);
+    }
+  }
+
+  public record BatchResult(int accepted, int rejected, List<BatchItemResult> results) {
+    static BatchResult of(List<BatchItemResult> results) {
+      var accepted = (int) results.stream().filter(r -> r.status() == BatchItemStatus.ACCEPTED).count();
+      return new BatchResult(accepted, results.size() - accepted, results);
+    }
+  }
 
-  public EmailEndpoint(ComponentClient componentClient) {
+  private static final TypeReference<List<NewEmailReq>> EMAIL_LIST = new TypeReference<>() {};
+
+  public EmailEndpoint(ComponentClient componentClient, Tenants tenants, Config config) {
     this.componentClient = componentClient;
+    this.tenants = tenants;
+    this.maxBatchSize = config.getInt("realestate.ingest.batch.max-size");
+    this.maxConcurrentDispatches = config.getInt("realestate.ingest.batch.max-concurrent");
   }
 
   @Post
   public HttpResponse newEmail(NewEmailReq newEmailReq) {
-    if (newEmailReq.subject == null || newEmailReq.subject.isEmpty())
-      throw new IllegalArgumentException("subject cannot be empty");
-    if (newEmailReq.content == null || newEmailReq.content.isEmpty())
-      throw new IllegalArgumentException("content cannot be empty");
+    var error = validate(newEmailReq);
+    if (error != null)
+      throw new IllegalArgumentException(error);
 
-    componentClient.forWorkflow(newEmailReq.sender())
+    componentClient.forWorkflow(prospectId(newEmailReq))
         .method(ProspectProcessingWorkflow::processNewEmail)
-        .invoke(new ProspectProcessingWorkflow.ProcessMessage(newEmailReq.sender, newEmailReq.subject(), newEmailReq.content()));
+        .invoke(toProcessMessage(newEmailReq));
 
   return HttpResponses.accepted();
   }
 
+  /**
+   * Accepts a burst of emails, either as a JSON array or as newline delimited JSON, of at most
+   * {@code realestate.ingest.batch.max-size} emails. Emails are grouped by prospect, the sender
+   * within its agency, so each workflow receives a single command with all its messages, and up to
+   * {@code realestate.ingest.batch.max-concurrent} prospects are dispatched at the same time.
+   */
+  @Post("/batch")
+  public CompletionStage<BatchResult> newEmails(HttpEntity.Strict body) {
+    var emails = parseBatch(body);
+    var results = new BatchItemResult[emails.size()];
+
+    // keeps the order in which prospects first appear in the batch
+    var byProspect = new LinkedHashMap<String, List<Integer>>();
+    for (int i = 0; i < emails.size(); i++) {
+      var email = emails.get(i);
+      var error = validate(email);
+      if (error != null) {
+        results[i] = BatchItemResult.rejected(i, email.sender(), error);
+      } else {
+        byProspect.computeIfAbsent(prospectId(email), __ -> new ArrayList<>()).add(i);
+      }
+    }
+
+    // each lane dispatches the next prospect once its previous one is done
+    var prospects = List.copyOf(byProspect.entrySet());
+    var next = new AtomicInteger();
+    var lanes = new CompletableFuture[Math.min(maxConcurrentDispatches, prospects.size())];
+    for (int lane = 0; lane < lanes.length; lane++) {
+      lanes[lane] = dispatchNext(prospects, next, emails, results);
+    }
+
+    return CompletableFuture.allOf(lanes)
+        .thenApply(__ -> BatchResult.of(Arrays.asList(results)));
+  }
+
+  private CompletableFuture<Void> dispatchNext(
+      List<Map.Entry<String, List<Integer>>> prospects,
+      AtomicInteger next,
+      List<NewEmailReq> emails,
+      BatchItemResult[] results) {
+    var position = next.getAndIncrement();
+    if (position >= prospects.size()) return CompletableFuture.completedFuture(null);
+
+    var prospect = prospects.get(position);
+    var indexes = prospect.getValue();
+    var msgs = indexes.stream().map(i -> toProcessMessage(emails.get(i))).toList();
+    return componentClient.forWorkflow(prospect.getKey())
+        .method(ProspectProcessingWorkflow::processNewEmails)
+        .invokeAsync(new ProspectProcessingWorkflow.ProcessMessages(msgs))
+        .handle((__, ex) -> {
+          for (var i : indexes) {
+            var sender = emails.get(i).sender();
+            results[i] = ex == null
+                ? BatchItemResult.accepted(i, sender)
+                : BatchItemResult.rejected(i, sender, ex.getMessage());
+          }
+          return indexes.size();
+        })
+        .toCompletableFuture()
+        .thenCompose(__ -> dispatchNext(prospects, next, emails, results));
+  }
+
+  /**
+   * @param id the sender address, prefixed with {@code <agency>:} for clients of an agency other than the default one
+   */
   @Get("/{id}")
   public ClientState getEntity(String id) {
     return componentClient.forEventSourcedEntity(id)
         .method(ClientInfoEntity::get)
         .invoke();
   }
+
+  /**
+   * Prospects, and their client details, are namespaced by agency.
+   */
+  private static String prospectId(NewEmailReq newEmailReq) {
+    return Tenants.prospectId(newEmailReq.agency(), newEmailReq.sender());
+  }
+
+  private String validate(NewEmailReq newEmailReq) {
+    if (newEmailReq == null)
+      return "email cannot be empty";
+    if (newEmailReq.sender == null || newEmailReq.sender.isEmpty())
+      return "sender cannot be empty";
+    // the separator would let the sender name the agency of the prospect
+    if (!Tenants.isValidSender(newEmailReq.sender))
+      return "invalid sender: " + newEmailReq.sender;
+    if (newEmailReq.subject == null || newEmailReq.subject.isEmpty())
+      return "subject cannot be empty";
+    if (newEmailReq.content == null || newEmailReq.content.isEmpty())
+      return "content cannot be empty";
+    if (newEmailReq.agency != null && !newEmailReq.agency.isEmpty() && !tenants.exists(newEmailReq.agency))
+      return "unknown agency: " + newEmailReq.agency;
+    return null;
+  }
+
+  private static ProspectProcessingWorkflow.ProcessMessage toProcessMessage(NewEmailReq newEmailReq) {
+    return new ProspectProcessingWorkflow.ProcessMessage(newEmailReq.sender(), newEmailReq.subject(), newEmailReq.content(), newEmailReq.messageId());
+  }
+
+  private List<NewEmailReq> parseBatch(HttpEntity.Strict body) {
+    var json = body.getData().utf8String().strip();
+    if (json.isEmpty())
+      throw new IllegalArgumentException("batch cannot be empty");
+
+    var mapper = JsonSupport.getObjectMapper();
+    List<NewEmailReq> emails;
+    try {
+      if (json.charAt(0) == '[') {
+        emails = mapper.readValue(json, EMAIL_LIST);
+      } else {
+        // newline delimited json, one email per line
+        emails = new ArrayList<>();
+        for (var line : json.split("\n")) {
+          if (line.isBlank()) continue;
+          if (emails.size() == maxBatchSize)
+            throw new IllegalArgumentException(tooLarge());
+          emails.add(mapper.readValue(line, NewEmailReq.class));
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("invalid batch: " + e.getMessage());
+    }
+    if (emails.size() > maxBatchSize)
+      throw new IllegalArgumentException(tooLarge());
+    return emails;
+  }
+
+  private String tooLarge() {
+    return "batch cannot have more than " + maxBatchSize + " emails";
+  }
 }
@@ -0,0 +1,41 @@
+package realestate.api;
+
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpResponse;
+import akka.javasdk.annotations.Acl;
+import akka.javasdk.annotations.http.Get;
+import akka.javasdk.annotations.http.HttpEndpoint;
+import realestate.application.Metrics;
+import realestate.application.ServiceGauges;
+
+/**
+ * Exposes the metrics collected by this service instance, as JSON or for a Prometheus scrape.
+ * The number of prospects per status and of queued LLM calls per lead priority cover the whole
+ * service, they are refreshed periodically rather than on every request. Like the client export,
+ * only other services of the project, such as a metrics scraper, can call it.
+ */
+@Acl(allow = @Acl.Matcher(service = "*"))
+@HttpEndpoint("/metrics")
+public class MetricsEndpoint {
+
+  private final Metrics metrics;
+  private final ServiceGauges serviceGauges;
+
+  public MetricsEndpoint(Metrics metrics, ServiceGauges serviceGauges) {
+    this.metrics = metrics;
+    this.serviceGauges = serviceGauges;
+  }
+
+  @Get
+  public Metrics.Snapshot get() {
+    serviceGauges.refreshIfStale();
+    return metrics.snapshot();
+  }
+
+  @Get("/prometheus")
+  public HttpResponse prometheus() {
+    serviceGauges.refreshIfStale();
+    return HttpResponse.create()
+        .withEntity(ContentTypes.TEXT_PLAIN_UTF8, PrometheusFormat.render(metrics.snapshot()));
+  }
+}
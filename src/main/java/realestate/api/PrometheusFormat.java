@@ -0,0 +1,52 @@
+package realestate.api;
+
+import realestate.application.Histogram;
+import realestate.application.Metrics;
+
+/**
+ * Renders a metrics snapshot in the Prometheus text exposition format.
+ */
+final class PrometheusFormat {
+
+  private static final String PREFIX = "realestate_";
+
+  private PrometheusFormat() {}
+
+  static String render(Metrics.Snapshot snapshot) {
+    var sb = new StringBuilder(4096);
+    snapshot.counters().forEach((name, value) -> sample(sb, name(name) + "_total", "counter", value));
+    snapshot.gauges().forEach((name, value) -> sample(sb, name(name), "gauge", value));
+    snapshot.rates().forEach((name, value) -> sample(sb, name(name), "gauge", value));
+    snapshot.histograms().forEach((name, histogram) -> histogram(sb, name(name), histogram));
+    return sb.toString();
+  }
+
+  private static void sample(StringBuilder sb, String name, String type, Number value) {
+    sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    sb.append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void histogram(StringBuilder sb, String name, Histogram.Snapshot histogram) {
+    sb.append("# TYPE ").append(name).append(" histogram\n");
+    for (int i = 0; i < histogram.bounds().length; i++) {
+      bucket(sb, name, Long.toString(histogram.bounds()[i]), histogram.counts()[i]);
+    }
+    bucket(sb, name, "+Inf", histogram.count());
+    sb.append(name).append("_sum ").append(histogram.sum()).append('\n');
+    sb.append(name).append("_count ").append(histogram.count()).append('\n');
+  }
+
+  private static void bucket(StringBuilder sb, String name, String bound, long count) {
+    sb.append(name).append("_bucket{le=\"").append(bound).append("\"} ").append(count).append('\n');
+  }
+
+  // metric names only allow letters, digits and underscores
+  private static String name(String name) {
+    var sb = new StringBuilder(PREFIX.length() + name.length()).append(PREFIX);
+    for (int i = 0; i < name.length(); i++) {
+      var c = name.charAt(i);
+      sb.append(Character.isLetterOrDigit(c) && c < 128 ? Character.toLowerCase(c) : '_');
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,153 @@
+package realestate.application;
+
+import com.typesafe.config.Config;
+import realestate.domain.ProspectState;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Bounded LRU cache of agent decisions, keyed by a hash of the normalized emails. Lets near-identical
+ * enquiries, like the ones generated by property portals, reuse a previous decision instead of calling the LLM.
+ * Only decisions without anything personal to their customer are cached, since they are replayed to others.
+ */
+public class AgentResponseCache {
+
+  public record CachedResponse(CustomerServiceAgent.ProcessEmailsResult result, List<AgentToolCalls.ToolCall> toolCalls) {
+
+    /**
+     * The decision as it can be shared with other customers, without the name and phone the model
+     * found, or empty when a side effect is personal: saving the customer details, or an email
+     * mentioning the sender, their name or their phone.
+     */
+    public static Optional<CachedResponse> shareable(
+        CustomerServiceAgent.ProcessEmailsResult result,
+        List<AgentToolCalls.ToolCall> toolCalls,
+        String sender,
+        ProspectState.ClientDetails details) {
+      // "Dear John" is as personal as the full name
+      var names = details.name() == null ? Stream.<String>empty() : Arrays.stream(details.name().split("[\\s-]+"));
+      var personal = Stream.concat(Stream.of(sender, details.phone()), names)
+          .filter(value -> value != null && value.length() > 1)
+          .map(String::toLowerCase)
+          .toList();
+      for (var call : toolCalls) {
+        switch (call) {
+          case AgentToolCalls.ToolCall.SaveCustomerInfo save -> {
+            return Optional.empty();
+          }
+          case AgentToolCalls.ToolCall.SendEmail email -> {
+            var text = (email.subject() + "\n" + email.content()).toLowerCase();
+            if (personal.stream().anyMatch(text::contains)) return Optional.empty();
+          }
+          case AgentToolCalls.ToolCall.Rejected rejected -> {
+            return Optional.empty();
+          }
+        }
+      }
+      var extracted = result.details() == null ? null : new CustomerServiceAgent.ExtractedDetails(
+          null, null, result.details().location(), result.details().propertyType(), result.details().transactionType());
+      return Optional.of(new CachedResponse(new CustomerServiceAgent.ProcessEmailsResult(result.status(), extracted), toolCalls));
+    }
+  }
+
+  private record Entry(CachedResponse response, long expiresAt) {}
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final String SENDER_PLACEHOLDER = "<sender>";
+
+  private final int maxSize;
+  private final long ttlMillis;
+  private final Metrics metrics;
+  private final LinkedHashMap<String, Entry> entries;
+
+  public AgentResponseCache(Config config, Metrics metrics) {
+    this.maxSize = config.getInt("realestate.agent-cache.max-size");
+    this.ttlMillis = config.getDuration("realestate.agent-cache.ttl").toMillis();
+    this.metrics = metrics;
+    // access ordered, so the eldest entry is the least recently used one
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > maxSize) {
+          metrics.increment("agent-cache.eviction");
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  public synchronized Optional<CachedResponse> get(String key) {
+    var entry = entries.get(key);
+    if (entry != null && entry.expiresAt() < System.currentTimeMillis()) {
+      entries.remove(key);
+      metrics.increment("agent-cache.eviction");
+      entry = null;
+    }
+    metrics.increment(entry == null ? "agent-cache.miss" : "agent-cache.hit");
+    return Optional.ofNullable(entry).map(Entry::response);
+  }
+
+  public synchronized void put(String key, CachedResponse response) {
+    if (isEnabled()) {
+      entries.put(key, new Entry(response, System.currentTimeMillis() + ttlMillis));
+    }
+  }
+
+  /**
+   * Hash of the emails ignoring case, whitespace and the sender address, so that the same
+   * enquiry from different senders maps to the same key. Which details are known already is part
+   * of the key, since it changes what the agent asks for, but not their values.
+   */
+  public static String key(String sender, ProspectState.ClientDetails known, List<ProspectState.Message> messages) {
+    var digest = sha256();
+    digest.update(knownMask(known));
+    for (var message : messages) {
+      digest.update(normalize(sender, message.subject()).getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(normalize(sender, message.content()).getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static byte knownMask(ProspectState.ClientDetails known) {
+    var fields = new String[] { known.name(), known.phone(), known.location(), known.type(), known.transactionType() };
+    var mask = 0;
+    for (int i = 0; i < fields.length; i++) {
+      if (fields[i] != null) mask |= 1 << i;
+    }
+    return (byte) mask;
+  }
+
+  private static String normalize(String sender, String text) {
+    if (text == null) return "";
+    var normalized = text.toLowerCase();
+    if (sender != null && !sender.isEmpty()) {
+      normalized = normalized.replace(sender.toLowerCase(), SENDER_PLACEHOLDER);
+    }
+    return WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
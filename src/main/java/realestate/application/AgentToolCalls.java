@@ -0,0 +1,71 @@
+package realestate.application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the tools invoked by {@link CustomerServiceAgent} in each session, so that the
+ * workflow can learn which side effects an agent turn had. The tools complete their side effects
+ * before replying, this is only kept on the node running the agent and is used for optimisations
+ * such as caching and escalation: when the agent ran on another node, the turn looks like one
+ * without tool calls.
+ */
+public class AgentToolCalls {
+
+  public sealed interface ToolCall {
+    /**
+     * Email sent to the customer, the recipient is always the customer of the session.
+     */
+    record SendEmail(String subject, String content) implements ToolCall {}
+
+    record SaveCustomerInfo(String name, String phoneNumber, String location, String propertyType, String transactionType) implements ToolCall {}
+
+    /**
+     * Tool called with arguments that didn't pass validation, or whose side effect failed.
+     */
+    record Rejected(String tool, String reason) implements ToolCall {}
+  }
+
+  private final ConcurrentHashMap<String, List<ToolCall>> calls = new ConcurrentHashMap<>();
+
+  public void record(String sessionId, ToolCall toolCall) {
+    calls.compute(sessionId, (__, existing) -> {
+      var updated = existing == null ? new ArrayList<ToolCall>() : existing;
+      updated.add(toolCall);
+      return updated;
+    });
+  }
+
+  /**
+   * Starts a new agent turn for the session, forgetting anything left behind by a failed attempt.
+   */
+  public void startTurn(String sessionId) {
+    calls.remove(sessionId);
+  }
+
+  /**
+   * Whether a tool call of the current turn was rejected.
+   */
+  public boolean hasRejected(String sessionId) {
+    // tools are done once the agent replied, nothing is added concurrently
+    var recorded = calls.get(sessionId);
+    return recorded != null && recorded.stream().anyMatch(call -> call instanceof ToolCall.Rejected);
+  }
+
+  /**
+   * Whether a tool call of the current turn sent an email or saved the customer.
+   */
+  public boolean hasSideEffects(String sessionId) {
+    var recorded = calls.get(sessionId);
+    return recorded != null && recorded.stream().anyMatch(call -> !(call instanceof ToolCall.Rejected));
+  }
+
+  /**
+   * Returns and forgets the tool calls recorded for the session.
+   */
+  public List<ToolCall> drain(String sessionId) {
+    var recorded = calls.remove(sessionId);
+    return recorded == null ? List.of() : List.copyOf(recorded);
+  }
+}
@@ -0,0 +1,30 @@
+package realestate.application;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff between {@code min} and {@code max}, randomly shortened by up to {@code jitter}
+ * so that workflows failing together don't all retry at the same time.
+ */
+public record Backoff(Duration min, Duration max, double jitter) {
+
+  public static Backoff of(Config config) {
+    return new Backoff(
+        config.getDuration("min"),
+        config.getDuration("max"),
+        config.getDouble("jitter"));
+  }
+
+  /**
+   * Delay before the given attempt, the first retry being attempt 1.
+   */
+  public Duration delay(int attempt) {
+    var exponent = Math.min(Math.max(attempt - 1, 0), 30);
+    var millis = Math.min(max.toMillis(), min.toMillis() << exponent);
+    var factor = 1.0 - jitter * ThreadLocalRandom.current().nextDouble();
+    return Duration.ofMillis((long) (millis * factor));
+  }
+}
@@ -0,0 +1,108 @@
+package realestate.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the emails sent by concurrent callers, such as the flushes of many customer outboxes,
+ * into batches of up to {@code maxBatch} emails for the underlying client. An email waits at most
+ * {@code linger} for others to join its batch. Callers still wait for their own emails to be sent.
+ */
+public class BatchingEmailClient implements EmailClient {
+
+  private static final Logger logger = LoggerFactory.getLogger(BatchingEmailClient.class);
+
+  private record Queued(Email email, CompletableFuture<Email> sent) {}
+
+  private final EmailClient delegate;
+  private final int maxBatch;
+  private final long lingerNanos;
+  private final LinkedBlockingQueue<Queued> queue = new LinkedBlockingQueue<>();
+
+  /**
+   * @param senders number of batches sent at the same time
+   */
+  public BatchingEmailClient(EmailClient delegate, int maxBatch, Duration linger, int senders) {
+    this.delegate = delegate;
+    this.maxBatch = maxBatch;
+    this.lingerNanos = linger.toNanos();
+    for (int i = 0; i < senders; i++) {
+      Thread.ofVirtual().name("email-batch-sender-" + i).start(this::sendBatches);
+    }
+  }
+
+  @Override
+  public void sendEmail(String to, String subject, String body) {
+    sendEmails(List.of(new Email(to, subject, body)));
+  }
+
+  @Override
+  public void sendEmails(List<Email> emails) {
+    // checked upfront, an invalid recipient must not fail the batch of other callers
+    for (var email : emails) {
+      if (!delegate.isValidAddress(email.to()))
+        throw new IllegalArgumentException("Invalid recipient address: " + email.to());
+    }
+    var queued = emails.stream().map(email -> new Queued(email, new CompletableFuture<>())).toList();
+    queue.addAll(queued);
+
+    var sent = new ArrayList<Email>(emails.size());
+    RuntimeException failure = null;
+    for (var email : queued) {
+      try {
+        sent.add(email.sent().join());
+      } catch (CompletionException e) {
+        failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+      }
+    }
+    if (failure != null) throw new SendFailedException(sent, failure);
+  }
+
+  @Override
+  public boolean isValidAddress(String address) {
+    return delegate.isValidAddress(address);
+  }
+
+  private void sendBatches() {
+    try {
+      while (true) {
+        var batch = new ArrayList<Queued>(maxBatch);
+        batch.add(queue.take());
+        var deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatch) {
+          var next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) break;
+          batch.add(next);
+        }
+        send(batch);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void send(List<Queued> batch) {
+    try {
+      delegate.sendEmails(batch.stream().map(Queued::email).toList());
+      batch.forEach(queued -> queued.sent().complete(queued.email()));
+    } catch (SendFailedException e) {
+      // emails can be alike, they are told apart by identity
+      var sent = e.sent();
+      for (var queued : batch) {
+        if (sent.stream().anyMatch(email -> email == queued.email())) queued.sent().complete(queued.email());
+        else queued.sent().completeExceptionally(e.getCause());
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Failed to send a batch of {} emails", batch.size(), e);
+      batch.forEach(queued -> queued.sent().completeExceptionally(e));
+    }
+  }
+}
@@ -18,7 +18,13 @@ public class ClientInfoEntity extends EventSourcedEntity<ClientState, ClientEven
   @Override
   public ClientState applyEvent(ClientEvent clientEvent) {
     return switch(clientEvent) {
-      case ClientEvent.ClientInfoSaved saved -> new ClientState(saved.name(), saved.email(), saved.phone());
+      case ClientEvent.ClientInfoSaved saved -> new ClientState(
+          saved.name(),
+          saved.email(),
+          saved.phone(),
+          saved.location(),
+          saved.propertyType(),
+          saved.transactionType());
     };
   }
 
@@ -38,12 +44,28 @@ public class ClientInfoEntity extends EventSourcedEntity<ClientState, ClientEven
     }
   }
 
-  public record SaveInfoCmd(String name, String email, String phone, PropertyDetails details) { }
+  public record SaveInfoCmd(String name, String email, String phone, PropertyDetails details) {
+    ClientState toClientState() {
+      return new ClientState(name, email, phone, details.location(), details.type(), details.transactionType().name());
+    }
+  }
+
+  /**
+   * @param client the saved details, null when nothing was saved for this email yet
+   */
+  public record Lookup(ClientState client) { }
 
   public Effect<Done> saveClientInfo(SaveInfoCmd saveInfoCmd) {
     logger.info("Saving client info: " + saveInfoCmd);
     return effects()
-        .persist(new ClientEvent.ClientInfoSaved(saveInfoCmd.name, saveInfoCmd.email, saveInfoCmd.phone))
+        .persist(new ClientEvent.ClientInfoSaved(
+            saveInfoCmd.name,
+            saveInfoCmd.email,
+            saveInfoCmd.phone,
+            saveInfoCmd.details.location(),
+            saveInfoCmd.details.type(),
+            saveInfoCmd.details.transactionType().name(),
+            System.currentTimeMillis()))
         .thenReply(__ -> Done.getInstance());
   }
 
@@ -52,4 +74,8 @@ public class ClientInfoEntity extends EventSourcedEntity<ClientState, ClientEven
     return effects().reply(currentState());
   }
 
+  public ReadOnlyEffect<Lookup> find() {
+    return effects().reply(new Lookup(currentState()));
+  }
+
 }
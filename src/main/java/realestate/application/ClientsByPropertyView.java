@@ -0,0 +1,132 @@
+package realestate.application;
+
+import akka.javasdk.annotations.Component;
+import akka.javasdk.annotations.Consume;
+import akka.javasdk.annotations.Query;
+import akka.javasdk.view.TableUpdater;
+import akka.javasdk.view.View;
+import realestate.domain.ClientEvent;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collected clients indexed by what they are looking for. Search values are normalized the same
+ * way as the rows, so queries are case-insensitive. Every query is for a single agency.
+ */
+@Component(id = "clients-by-property")
+public class ClientsByPropertyView extends View {
+
+  public record ClientRow(
+      String email,
+      String tenant,
+      String name,
+      String phone,
+      String location,
+      String city,
+      String propertyType,
+      String transactionType,
+      long updatedAt) {}
+
+  public record ClientsPage(List<ClientRow> clients, String nextPageToken, boolean hasMore) {}
+
+  public record ByCity(String tenant, String city, String pageToken, int pageSize) {}
+
+  public record ByPropertyType(String tenant, String propertyType, String pageToken, int pageSize) {}
+
+  public record ByTransactionType(String tenant, String transactionType, String pageToken, int pageSize) {}
+
+  public record ByAll(String tenant, String city, String propertyType, String transactionType, String pageToken, int pageSize) {}
+
+  public record UpdatedSince(String tenant, long updatedAt) {}
+
+  @Consume.FromEventSourcedEntity(ClientInfoEntity.class)
+  public static class ClientsUpdater extends TableUpdater<ClientRow> {
+
+    public Effect<ClientRow> onEvent(ClientEvent event) {
+      return switch (event) {
+        // clients are namespaced by agency like the prospects
+        case ClientEvent.ClientInfoSaved saved -> effects().updateRow(new ClientRow(
+            saved.email(),
+            Tenants.tenantId(updateContext().eventSubject().orElseThrow()),
+            saved.name(),
+            saved.phone(),
+            saved.location(),
+            city(saved.location()),
+            normalize(saved.propertyType()),
+            normalize(saved.transactionType()),
+            saved.savedAt()));
+      };
+    }
+  }
+
+  @Query("""
+      SELECT * AS clients, next_page_token() AS nextPageToken, has_more() AS hasMore
+      FROM clients_by_property
+      WHERE tenant = :tenant AND city = :city
+      OFFSET page_token_offset(:pageToken)
+      LIMIT :pageSize
+      """)
+  public QueryEffect<ClientsPage> getByCity(ByCity query) {
+    return queryResult();
+  }
+
+  @Query("""
+      SELECT * AS clients, next_page_token() AS nextPageToken, has_more() AS hasMore
+      FROM clients_by_property
+      WHERE tenant = :tenant AND propertyType = :propertyType
+      OFFSET page_token_offset(:pageToken)
+      LIMIT :pageSize
+      """)
+  public QueryEffect<ClientsPage> getByPropertyType(ByPropertyType query) {
+    return queryResult();
+  }
+
+  @Query("""
+      SELECT * AS clients, next_page_token() AS nextPageToken, has_more() AS hasMore
+      FROM clients_by_property
+      WHERE tenant = :tenant AND transactionType = :transactionType
+      OFFSET page_token_offset(:pageToken)
+      LIMIT :pageSize
+      """)
+  public QueryEffect<ClientsPage> getByTransactionType(ByTransactionType query) {
+    return queryResult();
+  }
+
+  @Query("""
+      SELECT * AS clients, next_page_token() AS nextPageToken, has_more() AS hasMore
+      FROM clients_by_property
+      WHERE tenant = :tenant AND city = :city AND propertyType = :propertyType AND transactionType = :transactionType
+      OFFSET page_token_offset(:pageToken)
+      LIMIT :pageSize
+      """)
+  public QueryEffect<ClientsPage> getByAll(ByAll query) {
+    return queryResult();
+  }
+
+  /**
+   * All clients of the agency updated at or after the given time, oldest first, streamed without loading them in memory.
+   */
+  @Query("""
+      SELECT *
+      FROM clients_by_property
+      WHERE tenant = :tenant AND updatedAt >= :updatedAt
+      ORDER BY updatedAt ASC
+      """)
+  public QueryStreamEffect<ClientRow> streamUpdatedSince(UpdatedSince query) {
+    return queryStreamResult();
+  }
+
+  /**
+   * City part of a "City, Country" location.
+   */
+  public static String city(String location) {
+    if (location == null) return null;
+    var comma = location.indexOf(',');
+    return normalize(comma < 0 ? location : location.substring(0, comma));
+  }
+
+  public static String normalize(String value) {
+    return value == null ? null : value.strip().toLowerCase(Locale.ROOT);
+  }
+}
@@ -1,14 +1,27 @@
 package realestate.application;
 
+import akka.javasdk.JsonSupport;
 import akka.javasdk.agent.Agent;
+import akka.javasdk.agent.JsonParsingException;
+import akka.javasdk.agent.ModelProvider;
 import akka.javasdk.annotations.Component;
 import akka.javasdk.annotations.FunctionTool;
 import akka.javasdk.client.ComponentClient;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import realestate.domain.ClientDetailsExtractor;
+import realestate.domain.OutboxState;
 import realestate.domain.ProspectState;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Objects.requireNonNull;
 
@@ -18,15 +31,28 @@ public class CustomerServiceAgent extends Agent {
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final ComponentClient componentClient;
-    private final EmailClient emailClient;
+    private final AgentToolCalls toolCalls;
+    private final ModelRouter modelRouter;
+    private final Metrics metrics;
+    private final Tenants tenants;
 
+    // the side effect of a tool is awaited before the tool replies, so the model learns whether it happened
+    private static final Duration TOOL_TIMEOUT = Duration.ofSeconds(10);
 
-    public CustomerServiceAgent(ComponentClient componentClient, EmailClient emailClient) {
+    // set by the command, the tools of the turn are called on the instance handling it
+    private String turnId;
+    private final AtomicInteger sideEffects = new AtomicInteger();
+
+
+    public CustomerServiceAgent(ComponentClient componentClient, AgentToolCalls toolCalls, ModelRouter modelRouter, Metrics metrics, Tenants tenants) {
         this.componentClient = componentClient;
-        this.emailClient = emailClient;
+        this.toolCalls = toolCalls;
+        this.modelRouter = modelRouter;
+        this.metrics = metrics;
+        this.tenants = tenants;
     }
 
-    private final String SYSTEM_PROMPT =
+    private static final String SYSTEM_PROMPT =
         """
         <instructions>
         You are a customer service agent for a real estate company processing incoming emails
@@ -45,34 +71,207 @@ public class CustomerServiceAgent extends Agent {
         using (in the 'From' field) is their valid contact email.
         Only send an email to the customer if you cannot derive the information from their emails.
         If sending an email, ask ONLY for the missing information. Do NOT ask for anything already provided.
+        Details listed in <known_details> were already collected, don't ask for them again.
         If the last step was sending an email, don't do anything and just wait for customer to reply.
         When you have all the information, use the tools provided to save the customer information.
-        Reply only with: WAIT_REPLY or ALL_INFO_COLLECTED
+        Reply with the status, WAIT_REPLY or ALL_INFO_COLLECTED, and the customer details found in the
+        emails so far. Leave out any detail you don't know.
         </instructions>
         """;
 
-    public record ProcessEmailsCmd(List<ProspectState.Message> emailContent) {}
+    /**
+     * @param knownDetails details already extracted from earlier emails, so the model only has to look for the rest
+     * @param tier the model to use, see {@link ModelRouter}, an escalated call only sends the known details
+     *             since it repeats a turn whose emails were already sent to the session
+     * @param turnId the same when the turn is retried, keys the side effects of the tools so they aren't repeated
+     */
+    public record ProcessEmailsCmd(List<ProspectState.Message> emailContent, ProspectState.ClientDetails knownDetails, ModelRouter.Tier tier, String turnId) {
+        public ProcessEmailsCmd {
+            tier = tier != null ? tier : ModelRouter.Tier.DEFAULT;
+        }
+
+        public ProcessEmailsCmd(List<ProspectState.Message> emailContent, ProspectState.ClientDetails knownDetails, ModelRouter.Tier tier) {
+            this(emailContent, knownDetails, tier, null);
+        }
+
+        public ProcessEmailsCmd(List<ProspectState.Message> emailContent, ProspectState.ClientDetails knownDetails) {
+            this(emailContent, knownDetails, ModelRouter.Tier.DEFAULT);
+        }
+
+        public ProcessEmailsCmd(List<ProspectState.Message> emailContent) {
+            this(emailContent, ProspectState.ClientDetails.EMPTY);
+        }
+    }
 
 
 
 
-    public Effect<String> processEmails(ProcessEmailsCmd cmd) {
-        var unreadMsgs = cmd.emailContent.stream().map(ProspectState.Message::toString).reduce("", String::concat);
+    public enum Status {
+        WAIT_REPLY,
+        ALL_INFO_COLLECTED
+    }
 
-        return effects()
-            .systemMessage(SYSTEM_PROMPT)
+    /**
+     * Details the model found in the emails, any of them can be null.
+     */
+    public record ExtractedDetails(String name, String phoneNumber, String location, String propertyType, String transactionType) {
+        /**
+         * Free text types are normalized, so that values such as "purchase" don't fail saving the client later on.
+         */
+        ProspectState.ClientDetails toClientDetails() {
+            return new ProspectState.ClientDetails(
+                blankToNull(name),
+                null,
+                blankToNull(phoneNumber),
+                blankToNull(location),
+                ClientDetailsExtractor.propertyTypeOf(propertyType),
+                ClientDetailsExtractor.transactionTypeOf(transactionType));
+        }
+
+        private static String blankToNull(String value) {
+            return value == null || value.isBlank() ? null : value;
+        }
+    }
+
+    /**
+     * Structured reply of the agent, the status is null when the model didn't follow the expected format.
+     */
+    public record ProcessEmailsResult(Status status, ExtractedDetails details) {
+        static final ProcessEmailsResult UNUSABLE = new ProcessEmailsResult(null, null);
+    }
+
+    private static final String ESCALATION_PROMPT =
+        """
+        <retry>
+        Your previous reply to these emails could not be used, it didn't follow the expected format
+        or a tool was called with invalid arguments. Process the emails again. Don't send an email
+        that was already sent.
+        </retry>
+        """;
+
+    public Effect<ProcessEmailsResult> processEmails(ProcessEmailsCmd cmd) {
+        turnId = cmd.turnId;
+        // an escalated call repeats the turn in the same session, the emails are in its memory already
+        var unreadMsgs = cmd.tier == ModelRouter.Tier.ESCALATED
+            ? renderMessages(cmd.knownDetails, List.of()) + ESCALATION_PROMPT
+            : renderMessages(cmd.knownDetails, cmd.emailContent);
+        // the session is the prospect, namespaced by its agency
+        var tenant = tenants.ofProspect(context().sessionId());
+
+        // the default tier is the model of the agency, or the one configured for the service
+        var effects = cmd.tier == ModelRouter.Tier.ESCALATED
+            ? effects().model(modelRouter.escalationModel())
+            : tenant.model().isEmpty() ? effects() : effects().model(ModelProvider.fromConfig(tenant.model()));
+
+        return effects
+            .systemMessage(systemPrompt(tenant))
             .userMessage(unreadMsgs)
+            .responseConformsTo(ProcessEmailsResult.class)
+            .onFailure(e -> {
+                // a reply that can't be parsed is for the workflow to handle, anything else is a provider failure
+                if (e instanceof JsonParsingException) {
+                    logger.warn("Could not parse agent reply", e);
+                    return ProcessEmailsResult.UNUSABLE;
+                }
+                throw e instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(e);
+            })
             .thenReply();
     }
 
+    static String systemPrompt(Tenants.Tenant tenant) {
+        if (tenant.instructions().isBlank()) return SYSTEM_PROMPT;
+        return SYSTEM_PROMPT + "<agency_instructions>\n" + tenant.instructions().strip() + "\n</agency_instructions>\n";
+    }
+
+    // room for the known details block, so the builder doesn't need to grow for it
+    private static final int KNOWN_DETAILS_LENGTH = 256;
+
+    /**
+     * Renders the messages into a single prompt using one builder sized upfront.
+     */
+    static String renderMessages(ProspectState.ClientDetails knownDetails, List<ProspectState.Message> messages) {
+        var size = KNOWN_DETAILS_LENGTH;
+        for (var message : messages) {
+            size += message.renderedLength();
+        }
+        var sb = new StringBuilder(size);
+        if (knownDetails != null && !knownDetails.isEmpty()) {
+            sb.append("<known_details>\n");
+            appendKnown(sb, "Full name", knownDetails.name());
+            appendKnown(sb, "Phone number", knownDetails.phone());
+            appendKnown(sb, "Email address", knownDetails.email());
+            appendKnown(sb, "City and country of interest", knownDetails.location());
+            appendKnown(sb, "Type of property", knownDetails.type());
+            appendKnown(sb, "Transaction type", knownDetails.transactionType());
+            sb.append("</known_details>\n\n");
+        }
+        for (var message : messages) {
+            message.appendTo(sb);
+        }
+        return sb.toString();
+    }
+
+    // rough figures, only used to budget the calls, see LlmAdmissionEntity
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int RESPONSE_TOKENS = 500;
+
+    /**
+     * Estimates the tokens used by processing the messages, including the prompt, the tool calls and the reply.
+     */
+    static int estimateTokens(List<ProspectState.Message> messages) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) estimatePromptTokens(messages) + RESPONSE_TOKENS);
+    }
+
+    static int estimatePromptTokens(List<ProspectState.Message> messages) {
+        long chars = SYSTEM_PROMPT.length() + KNOWN_DETAILS_LENGTH;
+        for (var message : messages) {
+            chars += message.renderedLength();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, chars / CHARS_PER_TOKEN);
+    }
+
+    /**
+     * Estimates the tokens of the structured reply from its JSON, as the model wrote it. Tool calls
+     * aren't visible from here.
+     */
+    static int estimateCompletionTokens(ProcessEmailsResult result) {
+        try {
+            return JsonSupport.getObjectMapper().writeValueAsString(result).length() / CHARS_PER_TOKEN;
+        } catch (JsonProcessingException e) {
+            return result.toString().length() / CHARS_PER_TOKEN;
+        }
+    }
+
+    private static void appendKnown(StringBuilder sb, String label, String value) {
+        if (value != null) {
+            sb.append("- ").append(label).append(": ").append(value).append('\n');
+        }
+    }
+
 
     // Tool implementations
     @FunctionTool(
         name = "send-email-customer",
         description = "Send email to customer. Use only when customer has not provided all the required information.")
-    public String sendEmail(String email, String subject, String content) {
-        emailClient.sendEmail(email, subject, content);
-        return "Email was sent to " + email + ". Wait for a reply.";
+    public String sendEmail(String subject, String content) {
+        metrics.increment("tool.send-email-customer");
+        var prospectId = context().sessionId();
+        // always to the prospect the session belongs to, never to an address picked by the model
+        var email = Tenants.sender(prospectId);
+        var outboxEmail = new OutboxState.OutboxEmail(nextIdempotencyKey(), email, subject, content);
+        try {
+            // the outbox belongs to the prospect, namespaced by agency like the session
+            await(componentClient.forEventSourcedEntity(prospectId)
+                .method(EmailOutboxEntity::enqueue)
+                .invokeAsync(outboxEmail));
+        } catch (RuntimeException e) {
+            logger.error("Error sending email to [{}]", email, e);
+            metrics.increment("tool.send-email-customer.failed");
+            toolCalls.record(prospectId, new AgentToolCalls.ToolCall.Rejected("send-email-customer", e.getMessage()));
+            return "Failed to send email: " + e.getMessage();
+        }
+        toolCalls.record(prospectId, new AgentToolCalls.ToolCall.SendEmail(subject, content));
+        return "Email sent to " + email + ". Wait for a reply.";
     }
 
     @FunctionTool(
@@ -86,6 +285,8 @@ public class CustomerServiceAgent extends Agent {
         String propertyType,
         String transactionType) {
 
+        metrics.increment("tool.save-customer-info");
+        var prospectId = context().sessionId();
         try {
             requireNonNull(name, "Name cannot be null");
             requireNonNull(email, "Email cannot be null");
@@ -93,21 +294,51 @@ public class CustomerServiceAgent extends Agent {
             logger.info("Saving customer information: name={}, email={}, phone={}, location={}, propertyType={}, transactionType={}",
                 name, email, phoneNumber, location, propertyType, transactionType);
 
+            var saveInfoCmd = new ClientInfoEntity.SaveInfoCmd(
+                name,
+                email,
+                phoneNumber,
+                ClientInfoEntity.PropertyDetails.of(location, propertyType, transactionType));
+
             // Save information to ClientInfoEntity
-            componentClient.forEventSourcedEntity(email)
+            await(componentClient.forEventSourcedEntity(prospectId)
                 .method(ClientInfoEntity::saveClientInfo)
-                .invoke(
-                    new ClientInfoEntity.SaveInfoCmd(
-                        name,
-                        email,
-                        phoneNumber,
-                        ClientInfoEntity.PropertyDetails.of(location, propertyType, transactionType)
-                ));
-
-            return "Successfully saved customer information for " + name;
+                .invokeAsync(saveInfoCmd));
+            toolCalls.record(prospectId,
+                new AgentToolCalls.ToolCall.SaveCustomerInfo(name, phoneNumber, location, propertyType, transactionType));
+
+            return "Customer information saved for " + name;
         } catch (Exception e) {
             logger.error("Error saving customer information", e);
+            metrics.increment("tool.save-customer-info.rejected");
+            toolCalls.record(prospectId, new AgentToolCalls.ToolCall.Rejected("save-customer-info", e.getMessage()));
             return "Failed to save customer information: " + e.getMessage();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Key for the next side effect of the turn, stable across retries of the turn as long as the
+     * tools are called in the same order.
+     */
+    private String nextIdempotencyKey() {
+        if (turnId == null) return UUID.randomUUID().toString();
+        return turnId + "-" + sideEffects.getAndIncrement();
+    }
+
+    /**
+     * Waits for the side effect of a tool on the thread the tool runs on, several tool calls of the
+     * model run side by side.
+     */
+    private static void await(CompletionStage<?> sideEffect) {
+        try {
+            sideEffect.toCompletableFuture().get(TOOL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("No reply within " + TOOL_TIMEOUT, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
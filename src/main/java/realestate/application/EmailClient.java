@@ -1,16 +1,61 @@
 package realestate.application;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Dummy email client for demonstration purpose
+ * Outbound email to customers.
  */
-public class EmailClient {
+public interface EmailClient {
 
-  private static final Logger logger = LoggerFactory.getLogger(EmailClient.class.getName());
+  /**
+   * @param id unique id of the email, used by receivers to detect duplicates, can be null
+   */
+  record Email(String id, String to, String subject, String body) {
+    public Email(String to, String subject, String body) {
+      this(null, to, subject, body);
+    }
+  }
+
+  /**
+   * Some emails of a batch couldn't be sent, the others were.
+   */
+  class SendFailedException extends RuntimeException {
+    private final List<Email> sent;
+
+    public SendFailedException(List<Email> sent, Throwable cause) {
+      super("Failed to send emails, " + sent.size() + " were sent", cause);
+      this.sent = List.copyOf(sent);
+    }
+
+    public List<Email> sent() {
+      return sent;
+    }
+  }
+
+  void sendEmail(String to, String subject, String body);
+
+  /**
+   * Sends several emails at once, implementations may reuse a single connection for all of them.
+   *
+   * @throws SendFailedException with the emails that were sent when any of them fails
+   */
+  default void sendEmails(List<Email> emails) {
+    var sent = new ArrayList<Email>(emails.size());
+    for (var email : emails) {
+      try {
+        sendEmail(email.to(), email.subject(), email.body());
+      } catch (RuntimeException e) {
+        throw new SendFailedException(sent, e);
+      }
+      sent.add(email);
+    }
+  }
 
-  public void sendEmail(String to, String subject, String body) {
-    logger.info("Sent email {to: {}, subject: {}, context: {}", to, subject, body);
+  /**
+   * Whether an email to the address can be sent at all, emails to other addresses fail every time.
+   */
+  default boolean isValidAddress(String address) {
+    return address != null && !address.isBlank();
   }
 }
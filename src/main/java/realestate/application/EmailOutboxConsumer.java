@@ -0,0 +1,88 @@
+package realestate.application;
+
+import akka.javasdk.annotations.Component;
+import akka.javasdk.annotations.Consume;
+import akka.javasdk.client.ComponentClient;
+import akka.javasdk.consumer.Consumer;
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import realestate.domain.OutboxEvent;
+import realestate.domain.OutboxState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flushes the outbox of a customer whenever an email is queued. All pending emails of that
+ * outbox are sent together, so queued events already covered by a previous flush find nothing
+ * left to send. The email client coalesces the flushes of many outboxes into larger batches,
+ * see {@link BatchingEmailClient}.
+ */
+@Component(id = "email-outbox-consumer")
+@Consume.FromEventSourcedEntity(EmailOutboxEntity.class)
+public class EmailOutboxConsumer extends Consumer {
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  private final ComponentClient componentClient;
+  private final EmailClient emailClient;
+  private final int maxBatch;
+
+  public EmailOutboxConsumer(ComponentClient componentClient, EmailClient emailClient, Config config) {
+    this.componentClient = componentClient;
+    this.emailClient = emailClient;
+    this.maxBatch = config.getInt("realestate.email.outbox.max-batch");
+  }
+
+  public Effect onEvent(OutboxEvent event) {
+    return switch (event) {
+      case OutboxEvent.EmailQueued queued -> flush(messageContext().eventSubject().orElseThrow());
+      case OutboxEvent.EmailsSent sent -> effects().ignore();
+    };
+  }
+
+  private Effect flush(String outboxId) {
+    var pending = componentClient.forEventSourcedEntity(outboxId)
+        .method(EmailOutboxEntity::getPending)
+        .invoke()
+        .emails();
+    if (pending.isEmpty()) {
+      return effects().done();
+    }
+
+    var batch = pending.subList(0, Math.min(maxBatch, pending.size()));
+    // an invalid recipient would fail on every retry, so those emails are dropped instead
+    var dropped = new ArrayList<String>();
+    var emails = new ArrayList<EmailClient.Email>(batch.size());
+    for (var email : batch) {
+      if (emailClient.isValidAddress(email.to())) {
+        emails.add(new EmailClient.Email(email.idempotencyKey(), email.to(), email.subject(), email.body()));
+      } else {
+        logger.warn("Dropping email {} to invalid address {}", email.idempotencyKey(), email.to());
+        dropped.add(email.idempotencyKey());
+      }
+    }
+
+    try {
+      emailClient.sendEmails(emails);
+    } catch (EmailClient.SendFailedException e) {
+      // only the emails that weren't sent are sent again when the event is retried
+      var done = new ArrayList<>(dropped);
+      e.sent().forEach(email -> done.add(email.id()));
+      markSent(outboxId, done);
+      throw e;
+    }
+    markSent(outboxId, batch.stream().map(OutboxState.OutboxEmail::idempotencyKey).toList());
+
+    logger.debug("Flushed {} emails from outbox {}", batch.size(), outboxId);
+    return effects().done();
+  }
+
+  private void markSent(String outboxId, List<String> idempotencyKeys) {
+    if (idempotencyKeys.isEmpty()) return;
+    componentClient.forEventSourcedEntity(outboxId)
+        .method(EmailOutboxEntity::markSent)
+        .invoke(new EmailOutboxEntity.MarkSent(idempotencyKeys));
+  }
+}
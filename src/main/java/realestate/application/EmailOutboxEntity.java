@@ -0,0 +1,66 @@
+package realestate.application;
+
+import akka.Done;
+import akka.javasdk.annotations.Component;
+import akka.javasdk.eventsourcedentity.EventSourcedEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import realestate.domain.OutboxEvent;
+import realestate.domain.OutboxState;
+
+import java.util.List;
+
+/**
+ * Outbox of emails to a customer, identified by the customer email. Emails are sent by
+ * {@link EmailOutboxConsumer}, so queueing one doesn't depend on the mail server.
+ */
+@Component(id = "email-outbox")
+public class EmailOutboxEntity extends EventSourcedEntity<OutboxState, OutboxEvent> {
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  public record MarkSent(List<String> idempotencyKeys) { }
+
+  public record PendingEmails(List<OutboxState.OutboxEmail> emails) { }
+
+  @Override
+  public OutboxState emptyState() {
+    return OutboxState.EMPTY;
+  }
+
+  @Override
+  public OutboxState applyEvent(OutboxEvent event) {
+    return switch (event) {
+      case OutboxEvent.EmailQueued queued -> currentState().queue(queued.email());
+      case OutboxEvent.EmailsSent sent -> currentState().sent(sent.idempotencyKeys());
+    };
+  }
+
+  public Effect<Done> enqueue(OutboxState.OutboxEmail email) {
+    if (currentState().isKnown(email.idempotencyKey())) {
+      logger.debug("Ignoring duplicate email, idempotencyKey={}", email.idempotencyKey());
+      return effects().reply(Done.getInstance());
+    }
+
+    return effects()
+        .persist(new OutboxEvent.EmailQueued(email))
+        .thenReply(__ -> Done.getInstance());
+  }
+
+  public Effect<Done> markSent(MarkSent markSent) {
+    var keys = markSent.idempotencyKeys().stream()
+        .filter(key -> currentState().pending().stream().anyMatch(email -> email.idempotencyKey().equals(key)))
+        .toList();
+    if (keys.isEmpty()) {
+      return effects().reply(Done.getInstance());
+    }
+
+    return effects()
+        .persist(new OutboxEvent.EmailsSent(keys))
+        .thenReply(__ -> Done.getInstance());
+  }
+
+  public ReadOnlyEffect<PendingEmails> getPending() {
+    return effects().reply(new PendingEmails(currentState().pending()));
+  }
+}
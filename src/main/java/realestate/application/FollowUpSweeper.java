@@ -0,0 +1,121 @@
+package realestate.application;
+
+import akka.javasdk.annotations.Component;
+import akka.javasdk.client.ComponentClient;
+import akka.javasdk.timedaction.TimedAction;
+import akka.javasdk.timer.TimerScheduler;
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import realestate.domain.ProspectState;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Periodically asks for a follow-up of every prospect waiting for a reply longer than the
+ * {@code follow-up.after} of its agency. A single timer for the whole service, instead of one per prospect.
+ */
+@Component(id = "follow-up-sweeper")
+public class FollowUpSweeper extends TimedAction {
+
+  public static final String TIMER_NAME = "follow-up-sweep";
+
+  /**
+   * Where the next sweep starts for each agency, the last update time of the last prospect of a
+   * full batch. Agencies not in the map start from their oldest prospect.
+   */
+  public record Cursor(Map<String, Long> lastUpdatedAfter) {
+    public static final Cursor START = new Cursor(Map.of());
+
+    long of(String tenantId) {
+      return lastUpdatedAfter.getOrDefault(tenantId, Long.MIN_VALUE);
+    }
+  }
+
+  private record Page(int followedUp, Long lastUpdated) {}
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  private final ComponentClient componentClient;
+  private final Metrics metrics;
+  private final Tenants tenants;
+  private final Duration interval;
+  private final Duration minDelay;
+  private final int batchSize;
+
+  public FollowUpSweeper(ComponentClient componentClient, Metrics metrics, Tenants tenants, Config config) {
+    this.componentClient = componentClient;
+    this.metrics = metrics;
+    this.tenants = tenants;
+    this.interval = config.getDuration("realestate.follow-up.sweep-interval");
+    this.minDelay = config.getDuration("realestate.follow-up.sweep-min-delay");
+    this.batchSize = config.getInt("realestate.follow-up.batch-size");
+  }
+
+  public Effect sweep(Cursor cursor) {
+    var next = new HashMap<String, Long>();
+    var progress = false;
+    for (var tenant : tenants.all()) {
+      var page = sweep(tenant, cursor.of(tenant.id()));
+      progress |= page.followedUp() > 0;
+      // a full batch means more prospects are likely due, the next sweep goes on past it
+      if (page.lastUpdated() != null) next.put(tenant.id(), page.lastUpdated());
+    }
+
+    // prospects that failed or refused the follow-up are paged past, but only progress is worth an early sweep
+    var delay = !next.isEmpty() && progress ? minDelay : interval;
+    schedule(timers(), componentClient, delay, next.isEmpty() ? Cursor.START : new Cursor(next));
+    metrics.increment("timer.created");
+    return effects().done();
+  }
+
+  private Page sweep(Tenants.Tenant tenant, long lastUpdatedAfter) {
+    var deadline = System.currentTimeMillis() - tenant.followUpAfter().toMillis();
+    var due = componentClient.forView()
+        .method(ProspectsByStatusView::getIdleSince)
+        .invoke(new ProspectsByStatusView.IdleSince(tenant.id(), ProspectState.Status.WAITING_REPLY.name(), lastUpdatedAfter, deadline, batchSize))
+        .prospects();
+
+    var followedUp = new AtomicInteger();
+    var calls = due.stream()
+        .map(prospect -> componentClient.forWorkflow(prospect.workflowId())
+            .method(ProspectProcessingWorkflow::followUp)
+            .invokeAsync()
+            .thenAccept(reply -> {
+              // prospects that moved on in the meantime reply without a follow-up
+              if (ProspectProcessingWorkflow.FOLLOW_UP_SENT.equals(reply)) followedUp.incrementAndGet();
+            })
+            .exceptionally(e -> {
+              logger.warn("Follow-up failed for prospect [{}]", prospect.workflowId(), e);
+              return null;
+            })
+            .toCompletableFuture())
+        .toArray(CompletableFuture[]::new);
+    CompletableFuture.allOf(calls).join();
+
+    if (!due.isEmpty()) {
+      metrics.add("follow-up.swept", due.size());
+      logger.debug("Requested follow-up for {} prospects of agency [{}], {} succeeded", due.size(), tenant.id(), followedUp.get());
+    }
+    var full = due.size() >= batchSize;
+    return new Page(followedUp.get(), full ? due.getLast().lastUpdated() : null);
+  }
+
+  /**
+   * Schedules the next sweep from the oldest prospects, replacing the one already scheduled if any.
+   */
+  public static void schedule(TimerScheduler timers, ComponentClient componentClient, Duration delay) {
+    schedule(timers, componentClient, delay, Cursor.START);
+  }
+
+  private static void schedule(TimerScheduler timers, ComponentClient componentClient, Duration delay, Cursor cursor) {
+    timers.createSingleTimer(
+        TIMER_NAME,
+        delay,
+        componentClient.forTimedAction().method(FollowUpSweeper::sweep).deferred(cursor));
+  }
+}
@@ -0,0 +1,60 @@
+package realestate.application;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of values over fixed buckets, as Prometheus histograms. Percentiles are estimated
+ * as the upper bound of the bucket they fall in, or as the last bound when beyond the last bucket,
+ * which then only says they are at least that.
+ */
+public class Histogram {
+
+  /**
+   * @param bounds upper bound of each bucket, values above the last one are only part of the count
+   * @param counts cumulative count of values up to each bound
+   */
+  public record Snapshot(long count, long sum, long[] bounds, long[] counts, long p50, long p99) {}
+
+  private final long[] bounds;
+  private final LongAdder[] buckets;
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+
+  public Histogram(long[] bounds) {
+    this.bounds = bounds.clone();
+    this.buckets = new LongAdder[bounds.length];
+    for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+  }
+
+  public void observe(long value) {
+    count.increment();
+    sum.add(value);
+    for (int i = 0; i < bounds.length; i++) {
+      if (value <= bounds[i]) {
+        buckets[i].increment();
+        return;
+      }
+    }
+  }
+
+  public Snapshot snapshot() {
+    var counts = new long[bounds.length];
+    var cumulative = 0L;
+    for (int i = 0; i < bounds.length; i++) {
+      cumulative += buckets[i].sum();
+      counts[i] = cumulative;
+    }
+    var total = count.sum();
+    return new Snapshot(total, sum.sum(), bounds.clone(), counts, percentile(counts, total, 0.5), percentile(counts, total, 0.99));
+  }
+
+  private long percentile(long[] counts, long total, double quantile) {
+    if (total == 0) return 0L;
+    var rank = (long) Math.ceil(quantile * total);
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] >= rank) return bounds[i];
+    }
+    // beyond the last bucket, the best known is that it's above the last bound
+    return bounds.length == 0 ? 0L : bounds[bounds.length - 1];
+  }
+}
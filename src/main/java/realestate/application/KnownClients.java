@@ -0,0 +1,63 @@
+package realestate.application;
+
+import com.typesafe.config.Config;
+import realestate.domain.ClientState;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of recent {@link ClientInfoEntity} lookups, including senders that are not
+ * clients yet, so that scoring and seeding the details of a prospect don't need a call each time.
+ */
+public class KnownClients {
+
+  private record Entry(ClientState client, long expiresAt) {}
+
+  private final int maxSize;
+  private final long ttlMillis;
+  private final Metrics metrics;
+  private final LinkedHashMap<String, Entry> entries;
+
+  public KnownClients(Config config, Metrics metrics) {
+    this.maxSize = config.getInt("realestate.known-clients.max-size");
+    this.ttlMillis = config.getDuration("realestate.known-clients.ttl").toMillis();
+    this.metrics = metrics;
+    // access ordered, so the eldest entry is the least recently used one
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * The saved details of the client with the given email, loading them on a cache miss. The
+   * loader is called outside the lock and returns null for an unknown client.
+   */
+  public Optional<ClientState> find(String email, Supplier<ClientState> loader) {
+    synchronized (this) {
+      var entry = entries.get(email);
+      if (entry != null && entry.expiresAt() >= System.currentTimeMillis()) {
+        metrics.increment("known-clients.hit");
+        return Optional.ofNullable(entry.client());
+      }
+    }
+    metrics.increment("known-clients.miss");
+    var client = loader.get();
+    put(email, client);
+    return Optional.ofNullable(client);
+  }
+
+  /**
+   * Records details just saved for the client, or null when the client is unknown.
+   */
+  public synchronized void put(String email, ClientState client) {
+    if (maxSize > 0) {
+      entries.put(email, new Entry(client, System.currentTimeMillis() + ttlMillis));
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package realestate.application;
+
+import akka.javasdk.annotations.Component;
+import akka.javasdk.annotations.Consume;
+import akka.javasdk.client.ComponentClient;
+import akka.javasdk.consumer.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import realestate.domain.AdmissionEvent;
+
+/**
+ * Resumes workflows parked waiting for LLM capacity once their call is granted.
+ */
+@Component(id = "llm-admission-consumer")
+@Consume.FromEventSourcedEntity(LlmAdmissionEntity.class)
+public class LlmAdmissionConsumer extends Consumer {
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  private final ComponentClient componentClient;
+
+  public LlmAdmissionConsumer(ComponentClient componentClient) {
+    this.componentClient = componentClient;
+  }
+
+  public Effect onEvent(AdmissionEvent event) {
+    return switch (event) {
+      case AdmissionEvent.CallGranted granted when granted.fromQueue() -> resume(granted.workflowId());
+      default -> effects().ignore();
+    };
+  }
+
+  private Effect resume(String workflowId) {
+    logger.debug("LLM call granted, resuming workflow [{}]", workflowId);
+    componentClient.forWorkflow(workflowId)
+        .method(ProspectProcessingWorkflow::resumeAgentCall)
+        .invoke();
+    return effects().done();
+  }
+}
@@ -0,0 +1,134 @@
+package realestate.application;
+
+import akka.Done;
+import akka.javasdk.annotations.Component;
+import akka.javasdk.eventsourcedentity.EventSourcedEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import realestate.domain.AdmissionEvent;
+import realestate.domain.AdmissionState;
+import realestate.domain.LeadScorer;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Admission control for LLM calls, shared by all nodes of the service. Calls beyond the concurrency
+ * limit or the tokens-per-minute budget are queued by the score of their lead, and granted as capacity frees up.
+ * Workflows are sharded over several instances of this entity, see {@link ProspectProcessingWorkflow}.
+ */
+@Component(id = "llm-admission")
+public class LlmAdmissionEntity extends EventSourcedEntity<AdmissionState, AdmissionEvent> {
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  public enum Admission {
+    GRANTED,
+    QUEUED
+  }
+
+  /**
+   * Limits are sent by the caller since entities don't have access to the configuration.
+   */
+  public record Acquire(String workflowId, int priority, int tokens, AdmissionState.Limits limits) { }
+
+  public record Release(String workflowId, AdmissionState.Limits limits) { }
+
+  /**
+   * Number of queued calls for each priority class of {@link LeadScorer}.
+   */
+  public record QueueDepth(Map<LeadScorer.Priority, Integer> byPriority) { }
+
+  /**
+   * Id of an admission shard, each agency has its own set of shards.
+   */
+  public static String shardId(String tenantId, int shard) {
+    return Tenants.DEFAULT.equals(tenantId)
+        ? "llm-admission-" + shard
+        : "llm-admission-" + tenantId + "-" + shard;
+  }
+
+  @Override
+  public AdmissionState emptyState() {
+    return AdmissionState.EMPTY;
+  }
+
+  @Override
+  public AdmissionState applyEvent(AdmissionEvent event) {
+    // expired leases and usage are dropped as events come in, so the state doesn't grow over time
+    return switch (event) {
+      case AdmissionEvent.CallQueued queued -> currentState().expire(queued.at())
+          .queued(new AdmissionState.Waiting(queued.workflowId(), queued.priority(), queued.tokens(), queued.at(), queued.expiresAt()));
+      case AdmissionEvent.QueueRefreshed refreshed -> currentState().expire(refreshed.at())
+          .refreshed(refreshed.workflowId(), refreshed.expiresAt());
+      case AdmissionEvent.CallGranted granted -> currentState().expire(granted.at())
+          .granted(granted.workflowId(), granted.tokens(), granted.at(), granted.expiresAt());
+      case AdmissionEvent.CallReleased released -> currentState().expire(released.at())
+          .released(released.workflowId());
+    };
+  }
+
+  public Effect<Admission> acquire(Acquire cmd) {
+    var now = System.currentTimeMillis();
+    var state = currentState().expire(now);
+
+    // a retried step acquiring again
+    if (state.isInFlight(cmd.workflowId())) {
+      return effects().reply(Admission.GRANTED);
+    }
+
+    if (state.canAdmit(cmd.workflowId(), cmd.priority(), cmd.tokens(), now, cmd.limits())) {
+      return effects()
+          .persist(new AdmissionEvent.CallGranted(cmd.workflowId(), cmd.tokens(), false, now, now + cmd.limits().leaseMillis()))
+          .thenReply(__ -> Admission.GRANTED);
+    }
+
+    // keeps its place in the queue for as long as it keeps asking, an event every half lease at most
+    var waiting = state.waiting(cmd.workflowId());
+    if (waiting.isPresent()) {
+      if (waiting.get().expiresAt() - now >= cmd.limits().leaseMillis() / 2) {
+        return effects().reply(Admission.QUEUED);
+      }
+      return effects()
+          .persist(new AdmissionEvent.QueueRefreshed(cmd.workflowId(), now, now + cmd.limits().leaseMillis()))
+          .thenReply(__ -> Admission.QUEUED);
+    }
+
+    logger.debug("Queueing LLM call for [{}], {} calls in flight, {} tokens used in the last minute",
+        cmd.workflowId(), state.inFlight().size(), state.usedTokens());
+    return effects()
+        .persist(new AdmissionEvent.CallQueued(cmd.workflowId(), cmd.priority(), cmd.tokens(), now, now + cmd.limits().leaseMillis()))
+        .thenReply(__ -> Admission.QUEUED);
+  }
+
+  /**
+   * Frees the slot of a finished call and grants it to as many queued calls as now fit.
+   */
+  public Effect<Done> release(Release cmd) {
+    var now = System.currentTimeMillis();
+    var state = currentState().expire(now);
+    if (!state.isInFlight(cmd.workflowId()) && state.queue().isEmpty()) {
+      return effects().reply(Done.getInstance());
+    }
+
+    var events = new ArrayList<AdmissionEvent>();
+    events.add(new AdmissionEvent.CallReleased(cmd.workflowId(), now));
+    for (var waiting : state.released(cmd.workflowId()).admissible(cmd.limits())) {
+      events.add(new AdmissionEvent.CallGranted(waiting.workflowId(), waiting.tokens(), true, now, now + cmd.limits().leaseMillis()));
+    }
+
+    return effects()
+        .persistAll(events)
+        .thenReply(__ -> Done.getInstance());
+  }
+
+  public ReadOnlyEffect<QueueDepth> queueDepth() {
+    var byPriority = new EnumMap<LeadScorer.Priority, Integer>(LeadScorer.Priority.class);
+    for (var priority : LeadScorer.Priority.values()) byPriority.put(priority, 0);
+    for (var waiting : currentState().expire(System.currentTimeMillis()).queue()) {
+      byPriority.merge(LeadScorer.Priority.of(waiting.priority()), 1, Integer::sum);
+    }
+    return effects().reply(new QueueDepth(byPriority));
+  }
+}
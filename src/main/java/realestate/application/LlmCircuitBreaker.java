@@ -0,0 +1,97 @@
+package realestate.application;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker in front of the LLM provider, shared by the workflows of an agency on the node,
+ * see {@link LlmCircuitBreakers}. Opens after
+ * {@code failureThreshold} consecutive failed calls, so agent steps stop calling the provider for
+ * {@code openFor}, then lets a single call through to probe whether it recovered.
+ */
+public class LlmCircuitBreaker {
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openForNanos;
+  private final Metrics metrics;
+  private final LongSupplier nanoClock;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openUntil;
+
+  public LlmCircuitBreaker(Config config, Metrics metrics) {
+    this(
+        config.getInt("realestate.llm-resilience.circuit-breaker.failure-threshold"),
+        config.getDuration("realestate.llm-resilience.circuit-breaker.open-for"),
+        metrics,
+        System::nanoTime);
+  }
+
+  LlmCircuitBreaker(int failureThreshold, Duration openFor, Metrics metrics, LongSupplier nanoClock) {
+    this.failureThreshold = failureThreshold;
+    this.openForNanos = openFor.toNanos();
+    this.metrics = metrics;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Whether a call may go ahead. While half open only one probe call is allowed at a time, if it
+   * never reports back another probe is allowed after {@code openFor}.
+   */
+  public synchronized boolean allowRequest() {
+    var now = nanoClock.getAsLong();
+    return switch (state) {
+      case CLOSED -> true;
+      case OPEN, HALF_OPEN -> {
+        if (now - openUntil < 0) yield false;
+        state = State.HALF_OPEN;
+        openUntil = now + openForNanos;
+        yield true;
+      }
+    };
+  }
+
+  public synchronized void recordSuccess() {
+    if (state != State.CLOSED) {
+      logger.info("LLM provider recovered, closing circuit breaker");
+      metrics.increment("llm-breaker.closed");
+    }
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+  }
+
+  public synchronized void recordFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+      logger.warn("LLM provider failing, opening circuit breaker for {}", Duration.ofNanos(openForNanos));
+      metrics.increment("llm-breaker.opened");
+      state = State.OPEN;
+      openUntil = nanoClock.getAsLong() + openForNanos;
+    }
+  }
+
+  /**
+   * Time until the next call may be allowed, zero when closed.
+   */
+  public synchronized Duration retryAfter() {
+    if (state == State.CLOSED) return Duration.ZERO;
+    return Duration.ofNanos(Math.max(0L, openUntil - nanoClock.getAsLong()));
+  }
+
+  public synchronized State state() {
+    return state;
+  }
+}
@@ -0,0 +1,25 @@
+package realestate.application;
+
+import com.typesafe.config.Config;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link LlmCircuitBreaker} per agency, agencies can have their own model, so one whose provider
+ * is failing doesn't park the agent steps of the others.
+ */
+public class LlmCircuitBreakers {
+
+  private final Config config;
+  private final Metrics metrics;
+  private final ConcurrentHashMap<String, LlmCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+  public LlmCircuitBreakers(Config config, Metrics metrics) {
+    this.config = config;
+    this.metrics = metrics;
+  }
+
+  public LlmCircuitBreaker forTenant(String tenantId) {
+    return breakers.computeIfAbsent(tenantId, __ -> new LlmCircuitBreaker(config, metrics));
+  }
+}
@@ -0,0 +1,17 @@
+package realestate.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dummy email client for demonstration purpose
+ */
+public class LoggingEmailClient implements EmailClient {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoggingEmailClient.class.getName());
+
+  @Override
+  public void sendEmail(String to, String subject, String body) {
+    logger.info("Sent email {to: {}, subject: {}, context: {}", to, subject, body);
+  }
+}
@@ -0,0 +1,84 @@
+package realestate.application;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process counters, gauges and histograms for the prospect pipeline, one instance shared by all
+ * components of the service. Counters named {@code <prefix>.hit} and {@code <prefix>.miss} also get
+ * a derived {@code <prefix>.hit-rate}.
+ */
+public class Metrics {
+
+  public record Snapshot(
+      Map<String, Long> counters,
+      Map<String, Long> gauges,
+      Map<String, Double> rates,
+      Map<String, Histogram.Snapshot> histograms) {}
+
+  public static final long[] LATENCY_MS_BUCKETS =
+      {10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000, 300_000, 900_000};
+  public static final long[] TOKEN_BUCKETS =
+      {64, 128, 256, 512, 1_024, 2_048, 4_096, 8_192, 16_384, 32_768};
+
+  private static final String HIT = ".hit";
+  private static final String MISS = ".miss";
+
+  private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+  public void increment(String name) {
+    counter(name).increment();
+  }
+
+  public void add(String name, long value) {
+    counter(name).add(value);
+  }
+
+  public void gauge(String name, long value) {
+    gauges.computeIfAbsent(name, __ -> new AtomicLong()).set(value);
+  }
+
+  /**
+   * Records a value in the named histogram, the buckets are only used the first time the name is seen.
+   */
+  public void observe(String name, long value, long[] buckets) {
+    histograms.computeIfAbsent(name, __ -> new Histogram(buckets)).observe(value);
+  }
+
+  public long count(String name) {
+    var counter = counters.get(name);
+    return counter == null ? 0L : counter.sum();
+  }
+
+  public double hitRate(String prefix) {
+    var hits = count(prefix + HIT);
+    var total = hits + count(prefix + MISS);
+    return total == 0 ? 0.0 : (double) hits / total;
+  }
+
+  public Snapshot snapshot() {
+    var values = new TreeMap<String, Long>();
+    var rates = new TreeMap<String, Double>();
+    counters.forEach((name, counter) -> {
+      values.put(name, counter.sum());
+      if (name.endsWith(HIT)) {
+        var prefix = name.substring(0, name.length() - HIT.length());
+        rates.put(prefix + ".hit-rate", hitRate(prefix));
+      }
+    });
+    var gaugeValues = new TreeMap<String, Long>();
+    gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.get()));
+    var distributions = new TreeMap<String, Histogram.Snapshot>();
+    histograms.forEach((name, histogram) -> distributions.put(name, histogram.snapshot()));
+    return new Snapshot(values, gaugeValues, rates, distributions);
+  }
+
+  private LongAdder counter(String name) {
+    return counters.computeIfAbsent(name, __ -> new LongAdder());
+  }
+}
@@ -0,0 +1,62 @@
+package realestate.application;
+
+import akka.javasdk.agent.ModelProvider;
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+
+/**
+ * Picks the model for each agent call. Calls go to the default model, which should be a small and
+ * cheap one, and are only repeated with the escalation model when its answer can't be used.
+ * Records calls, latency and an estimate of the cost of each tier.
+ */
+public class ModelRouter {
+
+  public enum Tier {
+    DEFAULT,
+    ESCALATED;
+
+    String metricName() {
+      return name().toLowerCase();
+    }
+  }
+
+  private final String escalationModel;
+  private final double defaultCostPer1kTokens;
+  private final double escalationCostPer1kTokens;
+  private final Metrics metrics;
+
+  public ModelRouter(Config config, Metrics metrics) {
+    var routing = config.getConfig("realestate.model-routing");
+    this.escalationModel = routing.getString("escalation-model");
+    this.defaultCostPer1kTokens = routing.getDouble("cost-per-1k-tokens.default");
+    this.escalationCostPer1kTokens = routing.getDouble("cost-per-1k-tokens.escalated");
+    this.metrics = metrics;
+  }
+
+  public boolean canEscalate() {
+    return !escalationModel.isEmpty();
+  }
+
+  public ModelProvider escalationModel() {
+    return ModelProvider.fromConfig(escalationModel);
+  }
+
+  /**
+   * Records a call to the given tier, the cost is estimated from the tokens in micro-dollars.
+   */
+  public void recordCall(Tier tier, Duration latency, int estimatedTokens) {
+    var prefix = "model." + tier.metricName();
+    var costPer1k = tier == Tier.DEFAULT ? defaultCostPer1kTokens : escalationCostPer1kTokens;
+    metrics.increment(prefix + ".calls");
+    metrics.add(prefix + ".latency-ms", latency.toMillis());
+    metrics.add(prefix + ".cost-micros", Math.round(estimatedTokens * costPer1k * 1_000));
+  }
+
+  /**
+   * Records whether the default model's answer was used, the miss rate being the escalation rate.
+   */
+  public void recordOutcome(boolean escalated) {
+    metrics.increment(escalated ? "model-routing.miss" : "model-routing.hit");
+  }
+}
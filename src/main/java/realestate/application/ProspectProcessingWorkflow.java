@@ -6,9 +6,21 @@ import akka.javasdk.client.ComponentClient;
 import akka.javasdk.timer.TimerScheduler;
 import akka.javasdk.workflow.Workflow;
 import com.typesafe.config.Config;
+import io.opentelemetry.api.trace.Span;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import realestate.domain.ClientState;
+import realestate.domain.ClientDetailsExtractor;
+import realestate.domain.LeadScorer;
+import realestate.domain.OutboxState;
 import realestate.domain.ProspectState;
 
 @Component(id = "prospect-processing-workflow")
@@ -16,18 +28,65 @@ public class ProspectProcessingWorkflow extends Workflow<ProspectState> {
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
+  private static final Duration STEP_TASKS_TIMEOUT = Duration.ofSeconds(20);
+  private static final Duration STEP_TIMEOUT = Duration.ofMinutes(1);
+
   private final TimerScheduler timerScheduler;
   private final ComponentClient componentClient;
-  private final Duration followUpTimer;
+  private final Metrics metrics;
+  private final AgentToolCalls toolCalls;
+  private final AgentResponseCache responseCache;
+  private final LlmCircuitBreakers circuitBreakers;
+  private final ModelRouter modelRouter;
+  private final KnownClients knownClients;
+  private final Tenants tenants;
+  private final Duration debounce;
+  private final int compactMaxMessages;
+  private final long compactMaxChars;
+  private final int compactKeepLast;
+  private final boolean admissionEnabled;
+  private final Duration admissionRetry;
+  private final Backoff backoff;
+  private final int maxAttempts;
+  private final Duration errorRetry;
+  private final Duration giveUpAfter;
+  private final Duration callTimeout;
 
 
   public ProspectProcessingWorkflow(
       TimerScheduler timerScheduler,
       ComponentClient componentClient,
+      Metrics metrics,
+      AgentToolCalls toolCalls,
+      AgentResponseCache responseCache,
+      LlmCircuitBreakers circuitBreakers,
+      ModelRouter modelRouter,
+      KnownClients knownClients,
+      Tenants tenants,
       Config config) {
     this.timerScheduler = timerScheduler;
     this.componentClient = componentClient;
-    this.followUpTimer = config.getDuration("realestate.follow-up.timer");
+    this.metrics = metrics;
+    this.toolCalls = toolCalls;
+    this.responseCache = responseCache;
+    this.circuitBreakers = circuitBreakers;
+    this.modelRouter = modelRouter;
+    this.knownClients = knownClients;
+    this.tenants = tenants;
+    this.debounce = config.getDuration("realestate.ingest.debounce");
+    this.compactMaxMessages = config.getInt("realestate.compaction.max-messages");
+    this.compactMaxChars = config.getLong("realestate.compaction.max-chars");
+    this.compactKeepLast = config.getInt("realestate.compaction.keep-last");
+    this.admissionEnabled = config.getBoolean("realestate.llm-admission.enabled");
+    this.admissionRetry = config.getDuration("realestate.llm-admission.retry-interval");
+    this.backoff = Backoff.of(config.getConfig("realestate.llm-resilience.backoff"));
+    this.maxAttempts = config.getInt("realestate.llm-resilience.max-attempts");
+    this.errorRetry = config.getDuration("realestate.llm-resilience.error-retry");
+    this.giveUpAfter = config.getDuration("realestate.llm-resilience.give-up-after");
+    this.callTimeout = config.getDuration("realestate.llm-resilience.call-timeout");
+    // an escalated turn makes two calls, both have to fit in the step
+    if (callTimeout.multipliedBy(2).compareTo(STEP_TIMEOUT) >= 0)
+      throw new IllegalArgumentException("realestate.llm-resilience.call-timeout must be less than half of " + STEP_TIMEOUT);
   }
 
 
@@ -35,106 +94,572 @@ public class ProspectProcessingWorkflow extends Workflow<ProspectState> {
   @Override
   public WorkflowSettings settings() {
     return WorkflowSettings.builder()
-      .defaultStepTimeout(Duration.ofMinutes(1 ))
-      .defaultStepRecovery(RecoverStrategy.maxRetries(2).failoverTo(ProspectProcessingWorkflow::errorStep))
+      .defaultStepTimeout(STEP_TIMEOUT)
+      // the step isn't repeated right away, a failure counts as a failed attempt and backs off like one
+      .defaultStepRecovery(RecoverStrategy.maxRetries(0).failoverTo(ProspectProcessingWorkflow::stepFailedStep))
       .build();
   }
 
   private StepEffect collectingClientDetails() {
+    var start = System.nanoTime();
+    try {
+      return collectClientDetails();
+    } finally {
+      metrics.observe("step.collecting-client-details-ms", Duration.ofNanos(System.nanoTime() - start).toMillis(), Metrics.LATENCY_MS_BUCKETS);
+    }
+  }
 
-    String msg;
+  private StepEffect collectClientDetails() {
+
+    CustomerServiceAgent.ProcessEmailsResult result;
+    var details = currentState().details();
+    var replayed = false;
 
     if (currentState().status() != ProspectState.Status.CLOSED
         && currentState().status() != ProspectState.Status.ERROR) {
 
-      currentState().unreadMessages().forEach(m -> logger.debug("Processing pending email: {}", m));
-      msg =
-          componentClient
-              .forAgent()
-              .inSession(commandContext().workflowId())
-              .method(CustomerServiceAgent::processEmails)
-              .invoke(new CustomerServiceAgent.ProcessEmailsCmd(currentState().unreadMessages()));
+      // earlier messages are already part of the agent session memory, only send what is new
+      var newMessages = currentState().newMessages();
+      newMessages.forEach(m -> logger.debug("Processing pending email: {}", m));
+
+      // a returning client doesn't have to give their name and phone again
+      if (details.name() == null || details.phone() == null)
+        details = seedFromKnownClient(details);
+      var extracted = ClientDetailsExtractor.extract(currentState().email(), newMessages);
+      details = details.merge(extracted);
+      if (details.isComplete()) {
+        metrics.increment("extraction.hit");
+        logger.info("All info extracted without the agent for client: [{}]", currentState().email());
+        saveClientInfo(commandContext().workflowId(), details);
+        recordDecisionLatency();
+        return stepEffects()
+          .updateState(currentState().withDetails(details).markAllRead().closed())
+          .thenEnd();
+      }
+      metrics.increment("extraction.miss");
+      // the email always comes from the sender, only what was found in the messages counts
+      if (extracted.knownFields() > (extracted.email() != null ? 1 : 0))
+        metrics.increment("extraction.partial");
+
+      // agencies have their own model and instructions, so they don't share decisions
+      var cacheKey = currentState().isFirstContact() && responseCache.isEnabled()
+          ? tenant().id() + ":" + AgentResponseCache.key(currentState().email(), details, newMessages)
+          : null;
+      var cached = cacheKey != null ? responseCache.get(cacheKey) : Optional.<AgentResponseCache.CachedResponse>empty();
+
+      if (cached.isPresent()) {
+        logger.info("Reusing cached agent decision for client: [{}]", currentState().email());
+        replay(cached.get().toolCalls());
+        result = cached.get().result();
+        // the agent session memory doesn't have these messages, keep them for the next agent call
+        replayed = true;
+      } else {
+        var circuitBreaker = circuitBreakers.forTenant(tenant().id());
+        if (!circuitBreaker.allowRequest()) {
+          // spread the retries of all the parked workflows once the breaker lets calls through again
+          var delay = circuitBreaker.retryAfter().plus(backoff.delay(1));
+          metrics.increment("llm-breaker.rejected");
+          logger.info("LLM provider unavailable, parking client [{}] for {}", currentState().email(), delay);
+          scheduleAgentRetry(delay);
+          return stepEffects()
+            .updateState(currentState().withDetails(details).queued())
+            .thenPause();
+        }
+
+        // bookkeeping calls run alongside the agent call, the step joins them before its transition
+        try (var tasks = new StepTasks(STEP_TASKS_TIMEOUT)) {
+          if (!acquireLlmCall(newMessages, details, tasks)) {
+            // parked until the call is granted, messages stay unread for when it resumes
+            return stepEffects()
+              .updateState(currentState().withDetails(details).queued())
+              .thenPause();
+          }
+
+          var workflowId = commandContext().workflowId();
+          try {
+            // forget calls recorded by previous failed attempts of this step
+            toolCalls.startTurn(workflowId);
+            try {
+              result = invokeAgent(newMessages, details);
+            } catch (RuntimeException e) {
+              circuitBreaker.recordFailure();
+              return retryAgentCall(details, e);
+            }
+            circuitBreaker.recordSuccess();
+          } finally {
+            // closing the tasks waits for the release on early returns
+            tasks.fork(() -> releaseLlmCall(workflowId));
+          }
+          tasks.join();
+        }
+        var agentToolCalls = toolCalls.drain(commandContext().workflowId());
+        rememberSavedClients(agentToolCalls);
+        if (cacheKey != null && result.status() != null) {
+          var known = result.details() == null ? details : details.merge(result.details().toClientDetails());
+          AgentResponseCache.CachedResponse.shareable(result, agentToolCalls, currentState().email(), known)
+            .ifPresent(response -> responseCache.put(cacheKey, response));
+        }
+      }
+
+      // what the model found is kept, so later turns only need to look for what is still missing
+      if (result.details() != null)
+        details = details.merge(result.details().toClientDetails());
     } else {
-      msg = "unexpected status " + currentState().status();
+      // nothing was processed, unread messages stay as they are
+      logger.debug("Not processing emails in status [{}]", currentState().status());
+      return stepEffects().thenPause();
     }
 
-    logger.debug("Current status: [{}], processing from AI: [{}]", currentState().status(), msg);
+    logger.debug("Current status: [{}], processing from AI: [{}]", currentState().status(), result);
+
+    // processed messages are part of the agent session memory, only the most recent ones are kept raw
+    var processedState = replayed
+        ? currentState().withDetails(details)
+        : currentState().withDetails(details).agentCallSucceeded().markAllRead().compact(compactMaxMessages, compactMaxChars, compactKeepLast);
 
-    return switch(msg) {
-      case "WAIT_REPLY" ->
+    if (result.status() != null)
+      recordDecisionLatency();
+
+    return switch(result.status()) {
+      case WAIT_REPLY ->
         stepEffects()
-          .updateState(currentState().waitingReply())
-          .thenTransitionTo(ProspectProcessingWorkflow::waitingReply);
+          // FollowUpSweeper asks for a follow-up if no reply arrives in time
+          .updateState(processedState.waitingReply())
+          .thenPause();
 
-      case "ALL_INFO_COLLECTED" -> {
+      case ALL_INFO_COLLECTED -> {
         logger.info("All info collected for client: [{}]", currentState().email());
         yield stepEffects()
-          .updateState(currentState().closed())
+          .updateState(processedState.closed())
           .thenEnd();
       }
-      default -> {
-        logger.error("Could not process message from AI: [{}]", msg);
-        yield stepEffects().thenPause();
-      }
+      case null ->
+        // a failed attempt, the messages stay unread so that they are processed again after the backoff
+        retryAgentCall(details, new IllegalStateException("Could not process message from AI: " + result));
     };
   }
 
-  private StepEffect waitingReply() {
-    var call =
-      componentClient
-        .forWorkflow(commandContext().workflowId())
-        .method(ProspectProcessingWorkflow::followUp).deferred();
+  /**
+   * Calls the agent with the default model, repeating the turn with the escalation model when the
+   * reply isn't one the workflow understands or a tool was called with invalid arguments.
+   */
+  private CustomerServiceAgent.ProcessEmailsResult invokeAgent(List<ProspectState.Message> newMessages, ProspectState.ClientDetails details) {
+    var result = invokeAgent(newMessages, details, ModelRouter.Tier.DEFAULT);
+    if (!modelRouter.canEscalate()) return result;
+
+    var workflowId = commandContext().workflowId();
+    var unusable = result.status() == null || toolCalls.hasRejected(workflowId);
+    // an email can't be taken back, the turn is only repeated when the first attempt had no side effects
+    var escalate = unusable && !toolCalls.hasSideEffects(workflowId);
+    modelRouter.recordOutcome(escalate);
+    if (!escalate) return result;
+
+    logger.info("Escalating to the stronger model for client [{}], default model replied [{}]", currentState().email(), result);
+    // same session and turn: the stronger model has the emails and the reply it replaces in its memory,
+    // and an email keyed like one the first attempt queued isn't sent twice
+    return invokeAgent(newMessages, details, ModelRouter.Tier.ESCALATED);
+  }
+
+  private CustomerServiceAgent.ProcessEmailsResult invokeAgent(List<ProspectState.Message> newMessages, ProspectState.ClientDetails details, ModelRouter.Tier tier) {
+    // child of the step span, so a trace goes from the http request to the LLM call
+    var span = commandContext().tracing().startSpan("agent-call");
+    span.ifPresent(s -> {
+      s.setAttribute("prospect.id", commandContext().workflowId());
+      s.setAttribute("model.tier", tier.name());
+    });
+    var promptTokens = CustomerServiceAgent.estimatePromptTokens(newMessages);
+    var start = System.nanoTime();
+    try {
+      var result = await(componentClient
+          .forAgent()
+          .inSession(commandContext().workflowId())
+          .method(CustomerServiceAgent::processEmails)
+          .invokeAsync(new CustomerServiceAgent.ProcessEmailsCmd(newMessages, details, tier, turnId())));
+      // the agent doesn't report the usage of the model, token counts are estimated from the text
+      metrics.observe("agent.completion-tokens-estimated", CustomerServiceAgent.estimateCompletionTokens(result), Metrics.TOKEN_BUCKETS);
+      return result;
+    } catch (RuntimeException e) {
+      span.ifPresent(s -> s.recordException(e));
+      throw e;
+    } finally {
+      var latency = Duration.ofNanos(System.nanoTime() - start);
+      metrics.observe("agent.call-latency-ms", latency.toMillis(), Metrics.LATENCY_MS_BUCKETS);
+      metrics.observe("agent.prompt-tokens-estimated", promptTokens, Metrics.TOKEN_BUCKETS);
+      modelRouter.recordCall(tier, latency, CustomerServiceAgent.estimateTokens(newMessages));
+      span.ifPresent(Span::end);
+    }
+  }
+
+  /**
+   * Waits for the agent call for at most the call timeout, well within the step timeout, so that a
+   * hung call is handled like any other failed call.
+   */
+  private <T> T await(CompletionStage<T> call) {
+    try {
+      return call.toCompletableFuture().get(callTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+    } catch (TimeoutException e) {
+      metrics.increment("llm.timeout");
+      throw new RuntimeException("Agent call timed out after " + callTimeout, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Time from the arrival of the oldest email being processed to the decision on it.
+   */
+  private void recordDecisionLatency() {
+    var pendingSince = currentState().pendingSince();
+    if (pendingSince > 0)
+      metrics.observe("prospect.ingest-to-decision-ms", System.currentTimeMillis() - pendingSince, Metrics.LATENCY_MS_BUCKETS);
+  }
+
+  /**
+   * Asks for a slot to call the LLM, returns false when the call was queued instead. Queued
+   * workflows are resumed by {@link LlmAdmissionConsumer} or, failing that, by a retry timer.
+   */
+  private boolean acquireLlmCall(List<ProspectState.Message> messages, ProspectState.ClientDetails details, StepTasks tasks) {
+    if (!admissionEnabled) return true;
+
+    var workflowId = commandContext().workflowId();
+    // queued calls are ordered by the score of their lead
+    var score = LeadScorer.score(details, messages, knownClient().isPresent(), !currentState().isFirstContact());
+    metrics.increment("lead." + score.priority().name().toLowerCase());
+    var admission = componentClient.forEventSourcedEntity(admissionShard(workflowId))
+        .method(LlmAdmissionEntity::acquire)
+        .invoke(new LlmAdmissionEntity.Acquire(workflowId, score.value(), CustomerServiceAgent.estimateTokens(messages), tenant().admissionLimits()));
+
+    if (admission == LlmAdmissionEntity.Admission.GRANTED) {
+      metrics.increment("llm-admission.granted");
+      if (currentState().isQueued()) {
+        // the retry timer is no longer needed, no reason to hold the agent call for it
+        var timerId = agentRetryTimerId();
+        tasks.fork(() -> timerScheduler.delete(timerId));
+        metrics.increment("timer.deleted");
+      }
+      return true;
+    }
+
+    metrics.increment("llm-admission.queued");
+    logger.info("LLM call for client [{}] queued, retrying in {}", currentState().email(), admissionRetry);
+    scheduleAgentRetry(admissionRetry);
+    return false;
+  }
+
+  /**
+   * Parks the workflow after a failed agent call, retrying with exponential backoff. Once out of
+   * attempts the workflow goes to the error step, which keeps retrying at a much slower pace.
+   */
+  private StepEffect retryAgentCall(ProspectState.ClientDetails details, RuntimeException e) {
+    metrics.increment("llm.failure");
+    var failed = currentState().withDetails(details).agentCallFailed();
+    if (failed.failedAttempts() >= maxAttempts) {
+      logger.error("Agent call for client [{}] failed {} times", currentState().email(), failed.failedAttempts(), e);
+      return stepEffects()
+        .updateState(failed)
+        .thenTransitionTo(ProspectProcessingWorkflow::errorStep);
+    }
 
-    var timerId = "follow-up-" + commandContext().workflowId();
+    var delay = backoff.delay(failed.failedAttempts());
+    logger.warn("Agent call for client [{}] failed, attempt {}, retrying in {}", currentState().email(), failed.failedAttempts(), delay, e);
+    scheduleAgentRetry(delay);
+    return stepEffects()
+      .updateState(failed.queued())
+      .thenPause();
+  }
 
+  /**
+   * Resumes the workflow with {@link #resumeAgentCall()} after the delay, replacing any retry already scheduled.
+   */
+  private void scheduleAgentRetry(Duration delay) {
+    metrics.increment("timer.created");
     timerScheduler.createSingleTimer(
-      timerId,
-      followUpTimer,
-      call);
-    logger.debug("Created timer for follow up in {}. timerId={} ", followUpTimer, timerId);
+        agentRetryTimerId(),
+        delay,
+        componentClient
+            .forWorkflow(commandContext().workflowId())
+            .method(ProspectProcessingWorkflow::resumeAgentCall)
+            .deferred());
+  }
+
+  private String agentRetryTimerId() {
+    return "agent-retry-" + commandContext().workflowId();
+  }
+
+  private void releaseLlmCall(String workflowId) {
+    if (!admissionEnabled) return;
+
+    componentClient.forEventSourcedEntity(admissionShard(workflowId))
+        .method(LlmAdmissionEntity::release)
+        .invoke(new LlmAdmissionEntity.Release(workflowId, tenants.ofProspect(workflowId).admissionLimits()));
+  }
+
+  /**
+   * Each agency has its own admission shards, so it never waits for capacity used by another one.
+   */
+  private String admissionShard(String workflowId) {
+    var tenant = tenants.ofProspect(workflowId);
+    return LlmAdmissionEntity.shardId(tenant.id(), Math.floorMod(workflowId.hashCode(), tenant.admissionShards()));
+  }
+
+  private Tenants.Tenant tenant() {
+    return tenants.ofProspect(commandContext().workflowId());
+  }
+
+  /**
+   * Details of the sender saved by an earlier conversation, if any.
+   */
+  private Optional<ClientState> knownClient() {
+    // clients are namespaced by agency like the prospects
+    var clientId = commandContext().workflowId();
+    try {
+      return knownClients.find(clientId, () -> componentClient.forEventSourcedEntity(clientId)
+          .method(ClientInfoEntity::find)
+          .invoke()
+          .client());
+    } catch (RuntimeException e) {
+      // only a shortcut, the prospect is handled as a new client
+      logger.debug("Could not look up client [{}]", clientId, e);
+      return Optional.empty();
+    }
+  }
+
+  private ProspectState.ClientDetails seedFromKnownClient(ProspectState.ClientDetails details) {
+    return knownClient()
+        .map(client -> {
+          metrics.increment("known-clients.seeded");
+          // only who the client is, the property may well be a different one this time
+          return new ProspectState.ClientDetails(client.name(), null, client.phone(), null, null, null).merge(details);
+        })
+        .orElse(details);
+  }
+
+  private void rememberSavedClients(List<AgentToolCalls.ToolCall> calls) {
+    for (var call : calls) {
+      if (call instanceof AgentToolCalls.ToolCall.SaveCustomerInfo save) {
+        knownClients.put(commandContext().workflowId(), new ClientInfoEntity.SaveInfoCmd(
+            save.name(),
+            currentState().email(),
+            save.phoneNumber(),
+            ClientInfoEntity.PropertyDetails.of(save.location(), save.propertyType(), save.transactionType())
+        ).toClientState());
+      }
+    }
+  }
+
+  /**
+   * Repeats the emails of a cached agent decision for the current customer, cached decisions
+   * never save a client, see {@link AgentResponseCache.CachedResponse#shareable}.
+   */
+  private void replay(List<AgentToolCalls.ToolCall> calls) {
+    var email = currentState().email();
+    var prospectId = commandContext().workflowId();
+    var turnId = turnId();
+    for (int i = 0; i < calls.size(); i++) {
+      if (calls.get(i) instanceof AgentToolCalls.ToolCall.SendEmail sendEmail) {
+        // enqueued one after the other to keep their order
+        componentClient.forEventSourcedEntity(prospectId)
+          .method(EmailOutboxEntity::enqueue)
+          .invoke(new OutboxState.OutboxEmail(
+            turnId + "-cached-" + i,
+            email,
+            sendEmail.subject(),
+            sendEmail.content()));
+      }
+    }
+  }
+
+  /**
+   * Identifies the agent turn processing the current messages, the same when the step is retried.
+   */
+  private String turnId() {
+    return commandContext().workflowId() + "-" + currentState().totalMessages();
+  }
+
+  private void saveClientInfo(String clientId, ProspectState.ClientDetails details) {
+    var saveInfoCmd = new ClientInfoEntity.SaveInfoCmd(
+        details.name(),
+        details.email(),
+        details.phone(),
+        ClientInfoEntity.PropertyDetails.of(details.location(), details.type(), details.transactionType()));
+    componentClient.forEventSourcedEntity(clientId)
+        .method(ClientInfoEntity::saveClientInfo)
+        .invoke(saveInfoCmd);
+    knownClients.put(clientId, saveInfoCmd.toClientState());
+  }
 
-    return stepEffects().thenPause();
+  /**
+   * The step failed or timed out, counted as a failed agent call and retried after a backoff.
+   */
+  private StepEffect stepFailedStep() {
+    logger.warn("Processing step failed for client [{}]", currentState().email());
+    circuitBreakers.forTenant(tenant().id()).recordFailure();
+    return retryAgentCall(currentState().details(), new IllegalStateException("Processing step failed"));
   }
 
   private StepEffect errorStep() {
-    logger.error("Workflow for for customer [{}] failed", currentState().email());
-    return stepEffects().updateState(currentState().error()).thenEnd();
+    // kept paused rather than ended, so the prospect isn't lost when the failure was temporary
+    var state = currentState();
+    // only an unavailable LLM provider is worth retrying on a timer, anything else fails the same way again
+    var providerFailure = state.failedAttempts() >= maxAttempts;
+    var waitingFor = Duration.ofMillis(System.currentTimeMillis() - state.pendingSince());
+    if (providerFailure && waitingFor.compareTo(giveUpAfter) < 0) {
+      logger.error("Workflow for customer [{}] failed, resuming in {}", state.email(), errorRetry);
+      scheduleAgentRetry(errorRetry);
+    } else {
+      logger.error("Workflow for customer [{}] failed, waiting for a new email to resume", state.email());
+      metrics.increment("prospect.error-parked");
+      timerScheduler.delete(agentRetryTimerId());
+    }
+    return stepEffects().updateState(state.error()).thenPause();
   }
 
   // Commands that can ben received by workflow
-  public record ProcessMessage(String sender, String subject, String content) { }
+  /**
+   * @param messageId the Message-ID of the email if known, otherwise emails are told apart by their content
+   */
+  public record ProcessMessage(String sender, String subject, String content, String messageId) {
+    public ProcessMessage(String sender, String subject, String content) {
+      this(sender, subject, content, null);
+    }
+  }
+
+  /**
+   * Several emails from the same sender, processed in a single transition.
+   */
+  public record ProcessMessages(List<ProcessMessage> messages) { }
 
   public Effect<String> processNewEmail(ProcessMessage msg) {
+    return startProcessing(List.of(msg));
+  }
 
-    var newMsg = ProspectState.Message.UserMessage(
-        msg.sender(),
-        msg.subject(),
-        msg.content());
+  public Effect<String> processNewEmails(ProcessMessages msgs) {
+    if (msgs.messages() == null || msgs.messages().isEmpty()) {
+      return effects().error("No messages to process");
+    }
+    return startProcessing(msgs.messages());
+  }
 
-    var updatedState = currentState() == null
-        ? ProspectState.EMPTY.withEmail(msg.sender()).addUnreadMessage(newMsg)
-        : currentState().addUnreadMessage(newMsg);
+  private Effect<String> startProcessing(List<ProcessMessage> msgs) {
+
+    var state = currentState() == null
+        ? ProspectState.EMPTY.withEmail(msgs.getFirst().sender())
+        : currentState();
+
+    // the mail gateway redelivers on timeouts, emails already received are acknowledged and dropped
+    var newMsgs = new ArrayList<ProspectState.Message>(msgs.size());
+    for (var msg : msgs) {
+      var message = ProspectState.Message.UserMessage(msg.sender(), msg.subject(), msg.content());
+      var messageId = messageId(msg, message);
+      if (state.hasSeen(messageId)) {
+        metrics.increment("ingest.duplicate");
+        logger.debug("Ignoring duplicate email {} from [{}]", messageId, msg.sender());
+        continue;
+      }
+      state = state.withSeen(messageId);
+      newMsgs.add(message);
+    }
+    if (newMsgs.isEmpty()) {
+      return effects().reply("Duplicate email ignored");
+    }
+
+    var updatedState = state.addUnreadMessages(newMsgs);
+    // a new email gives a prospect in error another chance
+    if (updatedState.status() == ProspectState.Status.ERROR)
+      updatedState = updatedState.resumed();
+
+    if (debounce.isZero()) {
+      return effects()
+          .updateState(updatedState)
+          .transitionTo(ProspectProcessingWorkflow::collectingClientDetails)
+          .thenReply("Processing started");
+    }
 
-    // delete the existing timer if it exists since we have a reply now
-    if (currentState() != null)
-      timerScheduler.delete("follow-up-" + currentState().email());
+    // messages stay buffered in the state until no new email arrives for the debounce window,
+    // re-creating the timer with the same name replaces the previous one
+    var timerId = "debounce-" + commandContext().workflowId();
+    metrics.increment("timer.created");
+    timerScheduler.createSingleTimer(
+        timerId,
+        debounce,
+        componentClient
+            .forWorkflow(commandContext().workflowId())
+            .method(ProspectProcessingWorkflow::processBufferedEmails)
+            .deferred());
+    logger.debug("Buffering email for {}. timerId={}", debounce, timerId);
 
     return effects()
         .updateState(updatedState)
+        .pause()
+        .thenReply("Processing started");
+  }
+
+  private static String messageId(ProcessMessage msg, ProspectState.Message message) {
+    if (msg.messageId() == null || msg.messageId().isBlank()) return message.digest();
+    // Message-ID headers are usually written between angle brackets
+    var id = msg.messageId().strip();
+    return id.startsWith("<") && id.endsWith(">") ? id.substring(1, id.length() - 1) : id;
+  }
+
+  public Effect<String> processBufferedEmails() {
+    if (currentState() == null || !currentState().hasNewMessages()) {
+      return effects().pause().thenReply("No buffered emails to process");
+    }
+
+    logger.debug("Debounce window ended, processing {} buffered emails", currentState().newMessages().size());
+    return effects()
         .transitionTo(ProspectProcessingWorkflow::collectingClientDetails)
         .thenReply("Processing started");
   }
 
+  /**
+   * Called when an LLM call that was queued or failed can be tried again.
+   */
+  public Effect<String> resumeAgentCall() {
+    if (currentState() == null) {
+      return effects().pause().thenReply("No queued LLM call");
+    }
+
+    if (currentState().status() == ProspectState.Status.ERROR) {
+      var resumed = currentState().resumed();
+      if (!resumed.hasNewMessages()) {
+        return effects().updateState(resumed).pause().thenReply("Resumed, no emails to process");
+      }
+      logger.info("Resuming workflow in error for client: [{}]", currentState().email());
+      return effects()
+          .updateState(resumed)
+          .transitionTo(ProspectProcessingWorkflow::collectingClientDetails)
+          .thenReply("Processing resumed");
+    }
+
+    if (!currentState().isQueued()) {
+      return effects().pause().thenReply("No queued LLM call");
+    }
+
+    return effects()
+        .transitionTo(ProspectProcessingWorkflow::collectingClientDetails)
+        .thenReply("Processing resumed");
+  }
+
+  static final String FOLLOW_UP_SENT = "Follow-up email sent";
+
   public Effect<String> followUp() {
-    if (currentState() == null || currentState().isWaitingReply()) {
+    if (currentState() == null || !currentState().isWaitingReply()) {
       return effects().pause().thenReply("No pending email to follow up");
     }
+    // the sweeper reads an eventually consistent view, the prospect may have moved on since
+    if (System.currentTimeMillis() - currentState().lastUpdated() < tenant().followUpAfter().toMillis()) {
+      return effects().pause().thenReply("Follow-up not due yet");
+    }
 
     logger.info("Follow-up email needed for client: [{}]", currentState().email());
     return effects()
         .updateState(currentState().followUpRequired())
         .pause()
-        .thenReply("Follow-up email sent");
+        .thenReply(FOLLOW_UP_SENT);
   }
 
   public ReadOnlyEffect<ProspectState.Status> status() {
@@ -0,0 +1,66 @@
+package realestate.application;
+
+import akka.javasdk.annotations.Component;
+import akka.javasdk.annotations.Consume;
+import akka.javasdk.annotations.Query;
+import akka.javasdk.view.TableUpdater;
+import akka.javasdk.view.View;
+import realestate.domain.ProspectState;
+
+import java.util.List;
+
+/**
+ * Prospects by agency, status and time of their last change, used to find the ones waiting too long for a reply.
+ */
+@Component(id = "prospects-by-status")
+public class ProspectsByStatusView extends View {
+
+  public record ProspectRow(String workflowId, String tenant, String email, String status, long lastUpdated) {}
+
+  public record Prospects(List<ProspectRow> prospects) {}
+
+  /**
+   * @param lastUpdatedAfter where the previous page ended, so prospects a sweep can't move on don't hide the ones behind them
+   */
+  public record IdleSince(String tenant, String status, long lastUpdatedAfter, long lastUpdatedBefore, int limit) {}
+
+  public record ByStatus(String status) {}
+
+  public record StatusCount(List<ProspectRow> prospects, long total) {}
+
+  @Consume.FromWorkflow(ProspectProcessingWorkflow.class)
+  public static class ProspectsUpdater extends TableUpdater<ProspectRow> {
+
+    public Effect<ProspectRow> onUpdate(ProspectState state) {
+      var workflowId = updateContext().eventSubject().orElseThrow();
+      return effects().updateRow(new ProspectRow(
+          workflowId,
+          Tenants.tenantId(workflowId),
+          state.email(),
+          state.status().name(),
+          state.lastUpdated()));
+    }
+  }
+
+  @Query("""
+      SELECT * AS prospects
+      FROM prospects_by_status
+      WHERE tenant = :tenant AND status = :status
+        AND lastUpdated > :lastUpdatedAfter AND lastUpdated < :lastUpdatedBefore
+      ORDER BY lastUpdated
+      LIMIT :limit
+      """)
+  public QueryEffect<Prospects> getIdleSince(IdleSince query) {
+    return queryResult();
+  }
+
+  @Query("""
+      SELECT * AS prospects, total_count() AS total
+      FROM prospects_by_status
+      WHERE status = :status
+      LIMIT 1
+      """)
+  public QueryEffect<StatusCount> countByStatus(ByStatus query) {
+    return queryResult();
+  }
+}
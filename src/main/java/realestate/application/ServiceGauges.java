@@ -0,0 +1,78 @@
+package realestate.application;
+
+import akka.javasdk.client.ComponentClient;
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import realestate.domain.LeadScorer;
+import realestate.domain.ProspectState;
+
+import java.util.EnumMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gauges covering the whole service rather than this instance: prospects per status and queued
+ * LLM calls per lead priority. Reading them takes a view query per status and a call per admission
+ * shard, so they are refreshed at most once per {@code realestate.metrics.gauge-refresh} however
+ * often the metrics are scraped.
+ */
+public class ServiceGauges {
+
+  private static final Logger logger = LoggerFactory.getLogger(ServiceGauges.class);
+
+  private final ComponentClient componentClient;
+  private final Metrics metrics;
+  private final Tenants tenants;
+  private final long refreshMillis;
+  private final AtomicLong nextRefresh = new AtomicLong();
+
+  public ServiceGauges(Config config, ComponentClient componentClient, Metrics metrics, Tenants tenants) {
+    this.componentClient = componentClient;
+    this.metrics = metrics;
+    this.tenants = tenants;
+    this.refreshMillis = config.getDuration("realestate.metrics.gauge-refresh").toMillis();
+  }
+
+  /**
+   * Refreshes the gauges if they are stale. Concurrent scrapes don't wait for a refresh in
+   * progress, they get the previous values.
+   */
+  public void refreshIfStale() {
+    var now = System.currentTimeMillis();
+    var next = nextRefresh.get();
+    if (now < next || !nextRefresh.compareAndSet(next, now + refreshMillis)) return;
+    try {
+      updateProspectCounts();
+      updateQueueDepths();
+    } catch (RuntimeException e) {
+      // the previous values are still better than failing the scrape
+      logger.warn("Failed to refresh service gauges", e);
+    }
+  }
+
+  private void updateProspectCounts() {
+    for (var status : ProspectState.Status.values()) {
+      var count = componentClient.forView()
+          .method(ProspectsByStatusView::countByStatus)
+          .invoke(new ProspectsByStatusView.ByStatus(status.name()))
+          .total();
+      metrics.gauge("prospects." + status.name().toLowerCase(), count);
+    }
+  }
+
+  private void updateQueueDepths() {
+    var depths = new EnumMap<LeadScorer.Priority, Integer>(LeadScorer.Priority.class);
+    for (var tenant : tenants.all()) {
+      for (int shard = 0; shard < tenant.admissionShards(); shard++) {
+        componentClient.forEventSourcedEntity(LlmAdmissionEntity.shardId(tenant.id(), shard))
+            .method(LlmAdmissionEntity::queueDepth)
+            .invoke()
+            .byPriority()
+            .forEach((priority, depth) -> depths.merge(priority, depth, Integer::sum));
+      }
+    }
+    for (var priority : LeadScorer.Priority.values()) {
+      metrics.gauge("llm-admission.queued." + priority.name().toLowerCase(), depths.getOrDefault(priority, 0));
+    }
+  }
+}
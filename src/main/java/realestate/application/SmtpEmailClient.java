@@ -0,0 +1,342 @@
+package realestate.application;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * SMTP email client keeping a bounded pool of open connections. Several emails can be sent over the
+ * same connection, pipelining the envelope commands when the server supports it (RFC 2920), and
+ * outbound emails are rate limited per destination domain.
+ */
+public class SmtpEmailClient implements EmailClient, AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(SmtpEmailClient.class);
+
+  // deliberately stricter than RFC 5321, anything that could break out of the envelope or a header is refused
+  private static final Pattern ADDRESS = Pattern.compile("[A-Za-z0-9.!#$%&'*+/=?^_`{|}~-]+@[A-Za-z0-9-]+(\\.[A-Za-z0-9-]+)*");
+
+  public record Settings(
+      String host,
+      int port,
+      String from,
+      String username,
+      String password,
+      boolean startTls,
+      int poolSize,
+      Duration timeout,
+      Duration maxIdle,
+      double ratePerSecondPerDomain,
+      int burstPerDomain) {
+
+    public static Settings of(Config config) {
+      var smtp = config.getConfig("realestate.email.smtp");
+      return new Settings(
+          smtp.getString("host"),
+          smtp.getInt("port"),
+          smtp.getString("from"),
+          smtp.getString("username"),
+          smtp.getString("password"),
+          smtp.getBoolean("start-tls"),
+          smtp.getInt("pool-size"),
+          smtp.getDuration("timeout"),
+          smtp.getDuration("max-idle"),
+          smtp.getDouble("rate-limit.per-second"),
+          smtp.getInt("rate-limit.burst"));
+    }
+  }
+
+  private final Settings settings;
+  private final Semaphore openConnections;
+  private final BlockingQueue<SmtpConnection> idleConnections;
+  private final ConcurrentHashMap<String, TokenBucket> domainRateLimits = new ConcurrentHashMap<>();
+
+  public SmtpEmailClient(Settings settings) {
+    this.settings = settings;
+    this.openConnections = new Semaphore(settings.poolSize());
+    this.idleConnections = new ArrayBlockingQueue<>(settings.poolSize());
+  }
+
+  @Override
+  public void sendEmail(String to, String subject, String body) {
+    sendEmails(List.of(new Email(to, subject, body)));
+  }
+
+  @Override
+  public void sendEmails(List<Email> emails) {
+    if (emails.isEmpty()) return;
+    for (var email : emails) {
+      if (!isValidAddress(email.to()))
+        throw new IllegalArgumentException("Invalid recipient address: " + email.to());
+    }
+    var sent = new ArrayList<Email>(emails.size());
+    try {
+      // take the rate limit tokens before holding a connection from the pool
+      for (var email : emails) {
+        domainRateLimits
+            .computeIfAbsent(domain(email.to()), __ -> new TokenBucket(settings.ratePerSecondPerDomain(), settings.burstPerDomain()))
+            .acquire();
+      }
+
+      var connection = acquire();
+      var reusable = false;
+      try {
+        connection.send(settings.from(), emails, sent);
+        reusable = true;
+        logger.debug("Sent {} emails through {}:{}", emails.size(), settings.host(), settings.port());
+      } finally {
+        release(connection, reusable);
+      }
+    } catch (IOException e) {
+      throw new SendFailedException(sent, new UncheckedIOException("Failed to send emails through " + settings.host() + ":" + settings.port(), e));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SendFailedException(sent, new IllegalStateException("Interrupted while sending emails", e));
+    }
+  }
+
+  private SmtpConnection acquire() throws IOException, InterruptedException {
+    if (!openConnections.tryAcquire(settings.timeout().toMillis(), TimeUnit.MILLISECONDS))
+      throw new IOException("No SMTP connection available within " + settings.timeout());
+
+    try {
+      SmtpConnection connection;
+      while ((connection = idleConnections.poll()) != null) {
+        if (connection.idleFor().compareTo(settings.maxIdle()) < 0) return connection;
+        // the server has likely dropped it already
+        connection.close();
+      }
+      return SmtpConnection.open(settings);
+    } catch (IOException | RuntimeException e) {
+      openConnections.release();
+      throw e;
+    }
+  }
+
+  private void release(SmtpConnection connection, boolean reusable) {
+    if (!reusable || !idleConnections.offer(connection)) {
+      connection.close();
+    }
+    openConnections.release();
+  }
+
+  @Override
+  public void close() {
+    SmtpConnection connection;
+    while ((connection = idleConnections.poll()) != null) {
+      connection.close();
+    }
+  }
+
+  @Override
+  public boolean isValidAddress(String address) {
+    return address != null && ADDRESS.matcher(address).matches();
+  }
+
+  static String domain(String address) {
+    var at = address.lastIndexOf('@');
+    return at < 0 ? "" : address.substring(at + 1).toLowerCase();
+  }
+
+  private static final class SmtpConnection implements Closeable {
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+    private final boolean pipelining;
+    private long lastUsed = System.nanoTime();
+
+    private SmtpConnection(Socket socket, BufferedReader in, Writer out, boolean pipelining) {
+      this.socket = socket;
+      this.in = in;
+      this.out = out;
+      this.pipelining = pipelining;
+    }
+
+    static SmtpConnection open(Settings settings) throws IOException {
+      var timeout = (int) settings.timeout().toMillis();
+      Socket socket = new Socket();
+      try {
+        socket.connect(new InetSocketAddress(settings.host(), settings.port()), timeout);
+        socket.setSoTimeout(timeout);
+
+        var in = reader(socket);
+        var out = writer(socket);
+        expect(in, 220);
+        var capabilities = ehlo(in, out);
+
+        if (settings.startTls()) {
+          command(in, out, "STARTTLS", 220);
+          var tlsSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+              .createSocket(socket, settings.host(), settings.port(), true);
+          tlsSocket.startHandshake();
+          socket = tlsSocket;
+          in = reader(socket);
+          out = writer(socket);
+          capabilities = ehlo(in, out);
+        }
+
+        if (!settings.username().isEmpty()) {
+          var credentials = "\0" + settings.username() + "\0" + settings.password();
+          command(in, out, "AUTH PLAIN " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)), 235);
+        }
+
+        return new SmtpConnection(socket, in, out, capabilities.contains("PIPELINING"));
+      } catch (IOException | RuntimeException e) {
+        socket.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Sends the emails in order, adding each one to {@code sent} once the server accepted it.
+     */
+    void send(String from, List<Email> emails, List<Email> sent) throws IOException {
+      for (var email : emails) {
+        var envelope = List.of("MAIL FROM:<" + from + ">", "RCPT TO:<" + email.to() + ">", "DATA");
+        var expected = new int[] { 250, 250, 354 };
+        if (pipelining) {
+          // the whole envelope goes in a single write, replies are read afterwards
+          for (var line : envelope) writeLine(out, line);
+          out.flush();
+          for (var code : expected) expect(in, code);
+        } else {
+          for (int i = 0; i < envelope.size(); i++) command(in, out, envelope.get(i), expected[i]);
+        }
+        writeMessage(from, email);
+        expect(in, 250);
+        sent.add(email);
+      }
+      lastUsed = System.nanoTime();
+    }
+
+    Duration idleFor() {
+      return Duration.ofNanos(System.nanoTime() - lastUsed);
+    }
+
+    private void writeMessage(String from, Email email) throws IOException {
+      writeLine(out, "From: <" + from + ">");
+      writeLine(out, "To: <" + email.to() + ">");
+      writeLine(out, "Subject: " + encodeHeader(headerValue(email.subject())));
+      writeLine(out, "Date: " + DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now()));
+      if (email.id() != null)
+        writeLine(out, "Message-ID: <" + email.id() + "@" + domain(from) + ">");
+      writeLine(out, "MIME-Version: 1.0");
+      writeLine(out, "Content-Type: text/plain; charset=UTF-8");
+      writeLine(out, "Content-Transfer-Encoding: 8bit");
+      writeLine(out, "");
+      // bare CRs and LFs are not allowed in SMTP data, every line break goes out as CRLF
+      for (var line : email.body().split("\r\n|\r|\n", -1)) {
+        // dot stuffing, a single dot line would end the message
+        writeLine(out, line.startsWith(".") ? "." + line : line);
+      }
+      writeLine(out, ".");
+      out.flush();
+    }
+
+    @Override
+    public void close() {
+      try {
+        writeLine(out, "QUIT");
+        out.flush();
+      } catch (IOException e) {
+        // closing anyway
+      }
+      try {
+        socket.close();
+      } catch (IOException e) {
+        logger.debug("Failed to close SMTP connection", e);
+      }
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+      return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static Writer writer(Socket socket) throws IOException {
+      return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static List<String> ehlo(BufferedReader in, Writer out) throws IOException {
+      writeLine(out, "EHLO " + localHostName());
+      out.flush();
+      return expect(in, 250);
+    }
+
+    private static List<String> command(BufferedReader in, Writer out, String line, int expectedCode) throws IOException {
+      writeLine(out, line);
+      out.flush();
+      return expect(in, expectedCode);
+    }
+
+    /**
+     * Reads a possibly multi-line reply, returning the text of each line.
+     */
+    private static List<String> expect(BufferedReader in, int expectedCode) throws IOException {
+      var lines = new ArrayList<String>();
+      String line;
+      do {
+        line = in.readLine();
+        if (line == null || line.length() < 3)
+          throw new IOException("Unexpected SMTP reply: " + line);
+        lines.add(line.length() > 4 ? line.substring(4) : "");
+      } while (line.length() > 3 && line.charAt(3) == '-');
+
+      if (!line.startsWith(Integer.toString(expectedCode)))
+        throw new IOException("Expected SMTP reply " + expectedCode + " but got: " + line);
+      return lines;
+    }
+
+    private static void writeLine(Writer out, String line) throws IOException {
+      out.write(line);
+      out.write("\r\n");
+    }
+
+    /**
+     * Folds line breaks into spaces, so that a value can't add headers of its own.
+     */
+    static String headerValue(String value) {
+      return value == null ? "" : value.replaceAll("[\r\n]+", " ");
+    }
+
+    private static String encodeHeader(String value) {
+      if (value.chars().allMatch(c -> c < 128)) return value;
+      return "=?UTF-8?B?" + Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8)) + "?=";
+    }
+
+    private static String localHostName() {
+      try {
+        return InetAddress.getLocalHost().getHostName();
+      } catch (IOException e) {
+        return "localhost";
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package realestate.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Independent work of a workflow step. Each task runs on its own virtual thread while the step
+ * goes on, and the step joins them before its transition. Closing waits, up to the same timeout,
+ * for the tasks that were not joined, so work such as releasing a lease also completes when the
+ * step bails out early. Tasks still running after the timeout are interrupted.
+ */
+final class StepTasks implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(StepTasks.class);
+
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final List<Future<?>> tasks = new ArrayList<>();
+  private final Duration timeout;
+
+  StepTasks(Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  void fork(Runnable task) {
+    tasks.add(executor.submit(task));
+  }
+
+  /**
+   * Waits for all the forked tasks, failing with the first failure found.
+   */
+  void join() {
+    var deadline = System.nanoTime() + timeout.toNanos();
+    try {
+      for (var task : tasks) {
+        task.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) throw cause;
+      throw new RuntimeException("Step task failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while joining step tasks", e);
+    } catch (TimeoutException e) {
+      // the step fails anyway, so closing must not wait for the hung tasks
+      executor.shutdownNow();
+      throw new RuntimeException("Step tasks did not complete within " + timeout, e);
+    } finally {
+      tasks.clear();
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+        logger.warn("Step tasks did not complete within {}, interrupting them", timeout);
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    // nobody joined these, so their failures would otherwise go unnoticed
+    for (var task : tasks) {
+      if (task.state() == Future.State.FAILED) {
+        logger.error("Step task failed", task.exceptionNow());
+      }
+    }
+    tasks.clear();
+  }
+}
@@ -0,0 +1,117 @@
+package realestate.application;
+
+import com.typesafe.config.Config;
+import realestate.domain.AdmissionState;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Agencies served by this service, configured under {@code realestate.tenants}. Prospects of an
+ * agency are namespaced as {@code <agency>:<sender>}, which is the id of their workflow and of
+ * their client and outbox entities. Prospects of the default agency keep the plain sender address,
+ * so a single agency deployment doesn't need any tenant configuration.
+ */
+public class Tenants {
+
+  public static final String DEFAULT = "default";
+
+  private static final char SEPARATOR = ':';
+
+  /**
+   * @param model        config path of the model for the agent calls, empty for the service default
+   * @param instructions agency specific instructions added to the agent system prompt, may be empty
+   * @param admissionLimits limits of each admission shard of the agency, its calls never queue behind
+   *                        the ones of another agency
+   */
+  public record Tenant(
+      String id,
+      String model,
+      String instructions,
+      AdmissionState.Limits admissionLimits,
+      int admissionShards,
+      Duration followUpAfter) {
+
+    public boolean isDefault() {
+      return DEFAULT.equals(id);
+    }
+  }
+
+  private final Map<String, Tenant> tenants = new LinkedHashMap<>();
+
+  public Tenants(Config config) {
+    var defaults = config.getConfig("realestate");
+    tenants.put(DEFAULT, tenant(DEFAULT, defaults));
+
+    var configured = config.getConfig("realestate.tenants");
+    for (var id : configured.root().keySet()) {
+      if (id.indexOf(SEPARATOR) >= 0)
+        throw new IllegalStateException("Agency id cannot contain '" + SEPARATOR + "': " + id);
+      // anything not set for the agency is taken from the service wide settings
+      tenants.put(id, tenant(id, configured.getConfig(id).withFallback(defaults)));
+    }
+  }
+
+  private static Tenant tenant(String id, Config config) {
+    var shards = config.getInt("llm-admission.shards");
+    // each shard gets an even part of the limits
+    var limits = new AdmissionState.Limits(
+        Math.max(1, config.getInt("llm-admission.max-concurrent") / shards),
+        Math.max(1, config.getInt("llm-admission.tokens-per-minute") / shards),
+        config.getDuration("llm-admission.lease").toMillis());
+    return new Tenant(
+        id,
+        config.hasPath("model") ? config.getString("model") : "",
+        config.hasPath("instructions") ? config.getString("instructions") : "",
+        limits,
+        shards,
+        config.getDuration("follow-up.after"));
+  }
+
+  public boolean exists(String id) {
+    return tenants.containsKey(id);
+  }
+
+  public Collection<Tenant> all() {
+    return tenants.values();
+  }
+
+  /**
+   * The agency of a prospect, the default one when its id has no known agency prefix.
+   */
+  public Tenant ofProspect(String prospectId) {
+    return tenants.getOrDefault(tenantId(prospectId), tenants.get(DEFAULT));
+  }
+
+  /**
+   * Senders can't contain the agency separator, otherwise a sender like {@code acme:alice@example.com}
+   * would be the prospect {@code alice@example.com} of agency acme.
+   */
+  public static boolean isValidSender(String sender) {
+    return sender.indexOf(SEPARATOR) < 0;
+  }
+
+  /**
+   * Id of the prospect for the sender in the given agency, null or empty meaning the default agency.
+   */
+  public static String prospectId(String tenantId, String sender) {
+    if (!isValidSender(sender))
+      throw new IllegalArgumentException("Sender cannot contain '" + SEPARATOR + "': " + sender);
+    if (tenantId == null || tenantId.isEmpty() || DEFAULT.equals(tenantId)) return sender;
+    return tenantId + SEPARATOR + sender;
+  }
+
+  /**
+   * The sender address of a prospect, its id without the agency prefix.
+   */
+  public static String sender(String prospectId) {
+    return prospectId.substring(prospectId.indexOf(SEPARATOR) + 1);
+  }
+
+  public static String tenantId(String prospectId) {
+    var separator = prospectId.indexOf(SEPARATOR);
+    return separator < 0 ? DEFAULT : prospectId.substring(0, separator);
+  }
+}
@@ -0,0 +1,60 @@
+package realestate.application;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter, refilled continuously at {@code ratePerSecond} up to {@code capacity} tokens.
+ */
+public class TokenBucket {
+
+  private final double capacity;
+  private final double ratePerNano;
+  private double tokens;
+  private long lastRefill;
+
+  public TokenBucket(double ratePerSecond, double capacity) {
+    if (ratePerSecond <= 0 || capacity <= 0)
+      throw new IllegalArgumentException("rate and capacity must be positive");
+    this.capacity = capacity;
+    this.ratePerNano = ratePerSecond / 1_000_000_000d;
+    this.tokens = capacity;
+    this.lastRefill = System.nanoTime();
+  }
+
+  /**
+   * Takes the tokens if available, without waiting.
+   */
+  public synchronized boolean tryAcquire(double amount) {
+    refill();
+    if (tokens >= amount) {
+      tokens -= amount;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Time until the given amount of tokens is available, zero if it already is.
+   */
+  public synchronized Duration timeUntilAvailable(double amount) {
+    refill();
+    if (tokens >= amount) return Duration.ZERO;
+    return Duration.ofNanos((long) Math.ceil((amount - tokens) / ratePerNano));
+  }
+
+  /**
+   * Takes a token, sleeping until one is available. Meant to be called from virtual threads.
+   */
+  public void acquire() throws InterruptedException {
+    while (!tryAcquire(1)) {
+      TimeUnit.NANOSECONDS.sleep(timeUntilAvailable(1).toNanos());
+    }
+  }
+
+  private void refill() {
+    var now = System.nanoTime();
+    tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+    lastRefill = now;
+  }
+}
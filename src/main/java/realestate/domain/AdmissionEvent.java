@@ -0,0 +1,29 @@
+package realestate.domain;
+
+import akka.javasdk.annotations.TypeName;
+
+sealed public interface AdmissionEvent {
+  /**
+   * @param expiresAt when the call leaves the queue if it doesn't ask again, calls queued before
+   *                  expiry existed have none and leave the queue right away, their workflows queue
+   *                  them again on their next retry
+   */
+  @TypeName("call-queued")
+  record CallQueued(String workflowId, int priority, int tokens, long at, long expiresAt) implements AdmissionEvent { }
+
+  /**
+   * A queued call asked again, it keeps its place until the new expiry.
+   */
+  @TypeName("call-queue-refreshed")
+  record QueueRefreshed(String workflowId, long at, long expiresAt) implements AdmissionEvent { }
+
+  /**
+   * @param fromQueue the call had been queued, so the workflow needs to be told it can go ahead
+   * @param expiresAt when the lease of the call ends if it is never released
+   */
+  @TypeName("call-granted")
+  record CallGranted(String workflowId, int tokens, boolean fromQueue, long at, long expiresAt) implements AdmissionEvent { }
+
+  @TypeName("call-released")
+  record CallReleased(String workflowId, long at) implements AdmissionEvent { }
+}
@@ -0,0 +1,166 @@
+package realestate.domain;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * LLM calls currently running, calls waiting for capacity and the tokens used in the last minute.
+ */
+public record AdmissionState(List<Lease> inFlight, List<Waiting> queue, List<Usage> usage) {
+
+  /**
+   * @param expiresAt when the call stops counting as running, in case the caller never releases it
+   */
+  public record Lease(String workflowId, int tokens, long grantedAt, long expiresAt) {}
+
+  /**
+   * @param expiresAt when the call leaves the queue unless it asks again, in case the caller never comes back
+   */
+  public record Waiting(String workflowId, int priority, int tokens, long queuedAt, long expiresAt) {
+
+    /**
+     * When the call would have queued with no priority, each point of priority counting as having
+     * waited {@link #AGING_MILLIS_PER_POINT} longer.
+     */
+    long agedAt() {
+      return agedAt(priority, queuedAt);
+    }
+
+    static long agedAt(int priority, long queuedAt) {
+      return queuedAt - priority * AGING_MILLIS_PER_POINT;
+    }
+  }
+
+  public record Usage(int tokens, long at) {}
+
+  /**
+   * @param leaseMillis how long a granted call counts as running, in case the caller never releases
+   *                    it, and how long a queued call keeps its place without asking again
+   */
+  public record Limits(int maxConcurrent, int tokensPerMinute, long leaseMillis) {}
+
+  private static final long MINUTE = 60_000L;
+
+  // a higher priority gets a call ahead, but only by so much, calls of a low priority don't wait forever
+  static final long AGING_MILLIS_PER_POINT = 1_000L;
+
+  // earliest aged time first, then first come first served
+  private static final Comparator<Waiting> QUEUE_ORDER =
+      Comparator.comparingLong((Waiting waiting) -> waiting.agedAt()).thenComparingLong(Waiting::queuedAt);
+
+  public static final AdmissionState EMPTY = new AdmissionState(List.of(), List.of(), List.of());
+
+  public AdmissionState {
+    inFlight = inFlight != null ? List.copyOf(inFlight) : List.of();
+    queue = queue != null ? List.copyOf(queue) : List.of();
+    usage = usage != null ? List.copyOf(usage) : List.of();
+  }
+
+  public boolean isInFlight(String workflowId) {
+    return inFlight.stream().anyMatch(lease -> lease.workflowId().equals(workflowId));
+  }
+
+  public boolean isQueued(String workflowId) {
+    return waiting(workflowId).isPresent();
+  }
+
+  public Optional<Waiting> waiting(String workflowId) {
+    return queue.stream().filter(waiting -> waiting.workflowId().equals(workflowId)).findFirst();
+  }
+
+  /**
+   * Whether a call with the given priority and tokens, asking at the given time, can start now
+   * without overtaking a queued call that would come first in the queue.
+   */
+  public boolean canAdmit(String workflowId, int priority, int tokens, long at, Limits limits) {
+    if (inFlight.size() >= limits.maxConcurrent()) return false;
+    // a single call bigger than the budget is still let through when nothing else ran in the last minute
+    if (!usage.isEmpty() && usedTokens() + tokens > limits.tokensPerMinute()) return false;
+    return queue.isEmpty()
+        || queue.getFirst().workflowId().equals(workflowId)
+        || Waiting.agedAt(priority, at) < queue.getFirst().agedAt();
+  }
+
+  public int usedTokens() {
+    return usage.stream().mapToInt(Usage::tokens).sum();
+  }
+
+  /**
+   * Queued calls that can start now, in order, given the current capacity.
+   */
+  public List<Waiting> admissible(Limits limits) {
+    var admitted = new ArrayList<Waiting>();
+    var state = this;
+    for (var waiting : queue) {
+      if (!state.canAdmit(waiting.workflowId(), waiting.priority(), waiting.tokens(), waiting.queuedAt(), limits)) break;
+      admitted.add(waiting);
+      var at = state.latest();
+      state = state.granted(waiting.workflowId(), waiting.tokens(), at, at + limits.leaseMillis());
+    }
+    return admitted;
+  }
+
+  public AdmissionState queued(Waiting waiting) {
+    var updated = new ArrayList<>(queue.stream().filter(w -> !w.workflowId().equals(waiting.workflowId())).toList());
+    updated.add(waiting);
+    updated.sort(QUEUE_ORDER);
+    return new AdmissionState(inFlight, updated, usage);
+  }
+
+  /**
+   * Keeps a queued call in the queue until the new expiry, in the same place.
+   */
+  public AdmissionState refreshed(String workflowId, long expiresAt) {
+    return new AdmissionState(
+        inFlight,
+        queue.stream()
+            .map(w -> w.workflowId().equals(workflowId)
+                ? new Waiting(w.workflowId(), w.priority(), w.tokens(), w.queuedAt(), expiresAt)
+                : w)
+            .toList(),
+        usage);
+  }
+
+  public AdmissionState granted(String workflowId, int tokens, long at, long expiresAt) {
+    var leases = new ArrayList<Lease>(inFlight.size() + 1);
+    leases.addAll(inFlight);
+    leases.add(new Lease(workflowId, tokens, at, expiresAt));
+    var used = new ArrayList<Usage>(usage.size() + 1);
+    used.addAll(usage);
+    used.add(new Usage(tokens, at));
+    return new AdmissionState(
+        leases,
+        queue.stream().filter(w -> !w.workflowId().equals(workflowId)).toList(),
+        used);
+  }
+
+  public AdmissionState released(String workflowId) {
+    return new AdmissionState(
+        inFlight.stream().filter(lease -> !lease.workflowId().equals(workflowId)).toList(),
+        queue,
+        usage);
+  }
+
+  /**
+   * Drops expired leases, expired queued calls and usage older than a minute, returning this same
+   * instance when there is nothing to drop.
+   */
+  public AdmissionState expire(long now) {
+    var leasesExpired = inFlight.stream().anyMatch(lease -> lease.expiresAt() <= now);
+    // a queued call whose caller went away would otherwise hold back every call behind it
+    var queueExpired = queue.stream().anyMatch(waiting -> waiting.expiresAt() <= now);
+    // usage is in time order
+    var usageExpired = !usage.isEmpty() && now - usage.getFirst().at() >= MINUTE;
+    if (!leasesExpired && !queueExpired && !usageExpired) return this;
+    return new AdmissionState(
+        leasesExpired ? inFlight.stream().filter(lease -> lease.expiresAt() > now).toList() : inFlight,
+        queueExpired ? queue.stream().filter(waiting -> waiting.expiresAt() > now).toList() : queue,
+        usageExpired ? usage.stream().filter(u -> now - u.at() < MINUTE).toList() : usage);
+  }
+
+  private long latest() {
+    return usage.isEmpty() ? 0L : usage.getLast().at();
+  }
+}
@@ -0,0 +1,180 @@
+package realestate.domain;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Rule based extraction of client details from emails, used before calling the LLM.
+ * Only unambiguous matches are reported, anything else is left for the agent to figure out.
+ */
+public final class ClientDetailsExtractor {
+
+  private static final Map<String, String> CITIES = Map.ofEntries(
+      Map.entry("porto", "Porto, Portugal"),
+      Map.entry("lisbon", "Lisbon, Portugal"),
+      Map.entry("lisboa", "Lisbon, Portugal"),
+      Map.entry("braga", "Braga, Portugal"),
+      Map.entry("coimbra", "Coimbra, Portugal"),
+      Map.entry("faro", "Faro, Portugal"),
+      Map.entry("madrid", "Madrid, Spain"),
+      Map.entry("barcelona", "Barcelona, Spain"),
+      Map.entry("valencia", "Valencia, Spain"),
+      Map.entry("seville", "Seville, Spain"),
+      Map.entry("paris", "Paris, France"),
+      Map.entry("lyon", "Lyon, France"),
+      Map.entry("london", "London, United Kingdom"),
+      Map.entry("manchester", "Manchester, United Kingdom"),
+      Map.entry("berlin", "Berlin, Germany"),
+      Map.entry("munich", "Munich, Germany"),
+      Map.entry("amsterdam", "Amsterdam, Netherlands"),
+      Map.entry("rome", "Rome, Italy"),
+      Map.entry("milan", "Milan, Italy"),
+      Map.entry("new york", "New York, United States"),
+      Map.entry("san francisco", "San Francisco, United States"));
+
+  private static final Map<String, String> PROPERTY_TYPES = Map.ofEntries(
+      Map.entry("apartment", "apartment"),
+      Map.entry("apartments", "apartment"),
+      Map.entry("flat", "apartment"),
+      Map.entry("studio", "apartment"),
+      Map.entry("condo", "apartment"),
+      Map.entry("t0", "apartment"),
+      Map.entry("t1", "apartment"),
+      Map.entry("t2", "apartment"),
+      Map.entry("t3", "apartment"),
+      Map.entry("t4", "apartment"),
+      Map.entry("t5", "apartment"),
+      Map.entry("house", "house"),
+      Map.entry("houses", "house"),
+      Map.entry("villa", "house"),
+      Map.entry("townhouse", "house"),
+      Map.entry("cottage", "house"));
+
+  private static final Pattern CITY = alternation(CITIES);
+  private static final Pattern PROPERTY_TYPE = alternation(PROPERTY_TYPES);
+  private static final Pattern RENT = Pattern.compile("\\b(rent|renting|rental|lease|leasing)\\b", Pattern.CASE_INSENSITIVE);
+  private static final Pattern BUY = Pattern.compile("\\b(buy|buying|purchase|purchasing)\\b", Pattern.CASE_INSENSITIVE);
+  private static final Pattern PHONE = Pattern.compile("(?i:phone|mobile|tel|number|contact)[^\\d+\\n]{0,20}(\\+?\\d[\\d ().-]{5,18}\\d)");
+  // the introduction is case-insensitive, the name itself must be capitalized words
+  private static final Pattern NAME = Pattern.compile("(?i:my name is|i am|i'm|this is)\\s+([A-Z][a-z]+(?:[ -][A-Z][a-z]+)+)");
+
+  // Title Case sentences look like names, "I Am Looking To Rent A Flat", a name ends at the first of these
+  private static final Set<String> NOT_NAME = Set.of(
+      "a", "an", "the", "and", "or", "but", "to", "for", "from", "in", "on", "at", "of", "with", "about",
+      "i", "am", "is", "are", "was", "be", "have", "has", "will", "would", "can", "could",
+      "looking", "interested", "writing", "searching", "trying", "hoping", "planning", "moving",
+      "want", "wanting", "need", "needing", "like", "interest", "enquiry", "inquiry",
+      "rent", "renting", "rental", "buy", "buying", "purchase", "lease", "sell", "selling",
+      "flat", "apartment", "house", "home", "property", "studio", "villa",
+      "here", "again", "still", "also", "just", "please", "thanks", "hello", "hi");
+
+  private static final int MIN_NAME_WORDS = 2;
+  private static final int MAX_NAME_WORDS = 4;
+
+  private static final int MIN_PHONE_DIGITS = 7;
+
+  private ClientDetailsExtractor() {}
+
+  /**
+   * Extracts the details found in the messages, later messages take precedence over earlier ones.
+   * The sender address is used as the contact email.
+   */
+  public static ProspectState.ClientDetails extract(String sender, List<ProspectState.Message> messages) {
+    var details = new ProspectState.ClientDetails(null, blankToNull(sender), null, null, null, null);
+    for (var message : messages) {
+      details = details.merge(extract(message.subject()).merge(extract(message.content())));
+    }
+    return details;
+  }
+
+  static ProspectState.ClientDetails extract(String text) {
+    if (text == null || text.isBlank()) return ProspectState.ClientDetails.EMPTY;
+
+    return new ProspectState.ClientDetails(
+        name(text),
+        null,
+        phone(text),
+        lookup(CITY.matcher(text), CITIES),
+        lookup(PROPERTY_TYPE.matcher(text), PROPERTY_TYPES),
+        transactionType(text));
+  }
+
+  /**
+   * The transaction type of a free text value, such as one given by the model, as "buy" or "rent".
+   * Null when the value doesn't say which, so it can't be saved as an invalid type.
+   */
+  public static String transactionTypeOf(String value) {
+    return value == null || value.isBlank() ? null : transactionType(value);
+  }
+
+  /**
+   * The property type of a free text value, such as one given by the model, mapped to "house" or
+   * "apartment" when it is one of those. Other types are kept lower case.
+   */
+  public static String propertyTypeOf(String value) {
+    if (value == null || value.isBlank()) return null;
+    var known = lookup(PROPERTY_TYPE.matcher(value), PROPERTY_TYPES);
+    return known != null ? known : value.strip().toLowerCase();
+  }
+
+  /**
+   * The first introduction followed by a plausible name, a few capitalized words that are not
+   * common words of an enquiry.
+   */
+  private static String name(String text) {
+    var matcher = NAME.matcher(text);
+    while (matcher.find()) {
+      var words = matcher.group(1).split("(?=[ -])");
+      var end = 0;
+      while (end < words.length && end < MAX_NAME_WORDS + 1
+          && !NOT_NAME.contains(words[end].replaceFirst("^[ -]", "").toLowerCase())) {
+        end++;
+      }
+      if (end >= MIN_NAME_WORDS && end <= MAX_NAME_WORDS) {
+        return String.join("", Arrays.copyOf(words, end));
+      }
+    }
+    return null;
+  }
+
+  private static String phone(String text) {
+    var matcher = PHONE.matcher(text);
+    while (matcher.find()) {
+      var candidate = matcher.group(1).strip();
+      var digits = candidate.chars().filter(Character::isDigit).count();
+      if (digits >= MIN_PHONE_DIGITS) return candidate;
+    }
+    return null;
+  }
+
+  private static String transactionType(String text) {
+    var rent = RENT.matcher(text).find();
+    var buy = BUY.matcher(text).find();
+    // mentioning both is ambiguous, let the agent decide
+    if (rent == buy) return null;
+    return rent ? "rent" : "buy";
+  }
+
+  private static String lookup(Matcher matcher, Map<String, String> gazetteer) {
+    return matcher.find() ? gazetteer.get(matcher.group(1).toLowerCase()) : null;
+  }
+
+  private static String blankToNull(String value) {
+    return value == null || value.isBlank() ? null : value;
+  }
+
+  private static Pattern alternation(Map<String, String> gazetteer) {
+    // longest entries first so that multi-word names win over their prefixes
+    var alternatives = gazetteer.keySet().stream()
+        .sorted(Comparator.comparingInt(String::length).reversed())
+        .map(Pattern::quote)
+        .collect(Collectors.joining("|"));
+    return Pattern.compile("\\b(" + alternatives + ")\\b", Pattern.CASE_INSENSITIVE);
+  }
+}
@@ -4,5 +4,5 @@ import akka.javasdk.annotations.TypeName;
 
 sealed public interface ClientEvent {
   @TypeName("client-info-saved")
-  record ClientInfoSaved(String name, String email, String phone) implements ClientEvent { }
+  record ClientInfoSaved(String name, String email, String phone, String location, String propertyType, String transactionType, long savedAt) implements ClientEvent { }
 }
@@ -1,4 +1,4 @@
 package realestate.domain;
 
-public record ClientState(String name, String email, String phone) {
-}
\ No newline at end of file
+public record ClientState(String name, String email, String phone, String location, String propertyType, String transactionType) {
+}
@@ -0,0 +1,78 @@
+package realestate.domain;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Estimates the value and urgency of a lead from cheap features, the details already extracted
+ * and the text of the new emails. Scores go from 0 to 100 and order the queued LLM calls, so that
+ * a buyer doesn't wait behind a burst of rental enquiries when capacity is short.
+ */
+public final class LeadScorer {
+
+  public enum Priority {
+    LOW,
+    MEDIUM,
+    HIGH;
+
+    public static Priority of(int score) {
+      if (score >= HIGH_SCORE) return HIGH;
+      if (score >= MEDIUM_SCORE) return MEDIUM;
+      return LOW;
+    }
+  }
+
+  public record Score(int value, Priority priority) {}
+
+  static final int HIGH_SCORE = 60;
+  static final int MEDIUM_SCORE = 35;
+
+  private static final int BUY = 35;
+  private static final int RENT = 10;
+  private static final int UNKNOWN_TRANSACTION = 15;
+  private static final int HOUSE = 10;
+  private static final int APARTMENT = 5;
+  private static final int KNOWN_LOCATION = 10;
+  private static final int KNOWN_PHONE = 5;
+  private static final int RETURNING_CLIENT = 15;
+  private static final int REPLY = 15;
+  private static final int URGENT = 10;
+
+  private static final Pattern URGENCY = Pattern.compile(
+      "\\b(urgent|urgently|asap|as soon as possible|immediately|this week|right away)\\b", Pattern.CASE_INSENSITIVE);
+
+  private LeadScorer() {}
+
+  /**
+   * @param returningClient whether details of the sender were saved before
+   * @param reply           whether the emails reply to the agent rather than start the conversation
+   */
+  public static Score score(ProspectState.ClientDetails details, List<ProspectState.Message> newMessages, boolean returningClient, boolean reply) {
+    // details given by the model may come in any case, e.g. "Buy"
+    var score = switch (normalize(details.transactionType())) {
+      case "buy" -> BUY;
+      case "rent" -> RENT;
+      default -> UNKNOWN_TRANSACTION;
+    };
+    var type = normalize(details.type());
+    if (type.equals("house")) score += HOUSE;
+    else if (type.equals("apartment")) score += APARTMENT;
+    if (details.location() != null) score += KNOWN_LOCATION;
+    if (details.phone() != null) score += KNOWN_PHONE;
+    if (returningClient) score += RETURNING_CLIENT;
+    if (reply) score += REPLY;
+    if (newMessages.stream().anyMatch(LeadScorer::isUrgent)) score += URGENT;
+
+    return new Score(score, Priority.of(score));
+  }
+
+  private static String normalize(String value) {
+    return value == null ? "" : value.strip().toLowerCase(Locale.ROOT);
+  }
+
+  private static boolean isUrgent(ProspectState.Message message) {
+    return (message.subject() != null && URGENCY.matcher(message.subject()).find())
+        || (message.content() != null && URGENCY.matcher(message.content()).find());
+  }
+}
@@ -0,0 +1,80 @@
+package realestate.domain;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable, append-only list of messages. Logs created by appending share the same backing
+ * array: the first append to a log claims the next free slot in place, so appending is O(1)
+ * amortized and passing a log to a new state costs no copy. Appending to a log that was
+ * already appended to copies the slots it can see into a new array.
+ */
+public final class MessageLog extends AbstractList<ProspectState.Message> implements RandomAccess {
+
+  private static final int MIN_CAPACITY = 8;
+
+  public static final MessageLog EMPTY = new MessageLog(new Buffer(new ProspectState.Message[0], 0), 0);
+
+  private static final class Buffer {
+    private final ProspectState.Message[] items;
+    // number of slots already claimed by some log
+    private final AtomicInteger used;
+
+    private Buffer(ProspectState.Message[] items, int used) {
+      this.items = items;
+      this.used = new AtomicInteger(used);
+    }
+  }
+
+  private final Buffer buffer;
+  private final int size;
+
+  private MessageLog(Buffer buffer, int size) {
+    this.buffer = buffer;
+    this.size = size;
+  }
+
+  /**
+   * Returns the list itself when it already is a log, otherwise a log with a copy of its messages.
+   */
+  public static MessageLog of(List<ProspectState.Message> messages) {
+    if (messages instanceof MessageLog log) return log;
+    if (messages == null || messages.isEmpty()) return EMPTY;
+    var items = messages.toArray(new ProspectState.Message[0]);
+    return new MessageLog(new Buffer(items, items.length), items.length);
+  }
+
+  public MessageLog append(ProspectState.Message message) {
+    Objects.requireNonNull(message, "message cannot be null");
+    if (size < buffer.items.length && buffer.used.compareAndSet(size, size + 1)) {
+      buffer.items[size] = message;
+      return new MessageLog(buffer, size + 1);
+    }
+    var items = Arrays.copyOf(buffer.items, Math.max(MIN_CAPACITY, size * 2));
+    items[size] = message;
+    return new MessageLog(new Buffer(items, size + 1), size + 1);
+  }
+
+  public MessageLog appendAll(List<ProspectState.Message> messages) {
+    var log = this;
+    for (var message : messages) {
+      log = log.append(message);
+    }
+    return log;
+  }
+
+  @Override
+  public ProspectState.Message get(int index) {
+    Objects.checkIndex(index, size);
+    return buffer.items[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
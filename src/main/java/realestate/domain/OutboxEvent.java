@@ -0,0 +1,13 @@
+package realestate.domain;
+
+import akka.javasdk.annotations.TypeName;
+
+import java.util.List;
+
+sealed public interface OutboxEvent {
+  @TypeName("email-queued")
+  record EmailQueued(OutboxState.OutboxEmail email) implements OutboxEvent { }
+
+  @TypeName("emails-sent")
+  record EmailsSent(List<String> idempotencyKeys) implements OutboxEvent { }
+}
@@ -0,0 +1,47 @@
+package realestate.domain;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Emails waiting to be sent to a customer, plus the keys of the last sent ones so that
+ * retried requests don't send the same email twice.
+ */
+public record OutboxState(List<OutboxEmail> pending, List<String> recentlySent) {
+
+  public record OutboxEmail(String idempotencyKey, String to, String subject, String body) {}
+
+  public static final int MAX_RECENTLY_SENT = 100;
+
+  public static final OutboxState EMPTY = new OutboxState(List.of(), List.of());
+
+  public OutboxState {
+    pending = pending != null ? List.copyOf(pending) : List.of();
+    recentlySent = recentlySent != null ? List.copyOf(recentlySent) : List.of();
+  }
+
+  public boolean isKnown(String idempotencyKey) {
+    return recentlySent.contains(idempotencyKey)
+        || pending.stream().anyMatch(email -> email.idempotencyKey().equals(idempotencyKey));
+  }
+
+  public OutboxState queue(OutboxEmail email) {
+    var updated = new ArrayList<OutboxEmail>(pending.size() + 1);
+    updated.addAll(pending);
+    updated.add(email);
+    return new OutboxState(updated, recentlySent);
+  }
+
+  public OutboxState sent(List<String> idempotencyKeys) {
+    var keys = new HashSet<>(idempotencyKeys);
+    var stillPending = pending.stream().filter(email -> !keys.contains(email.idempotencyKey())).toList();
+
+    var sent = new ArrayList<String>(recentlySent.size() + idempotencyKeys.size());
+    sent.addAll(recentlySent);
+    sent.addAll(idempotencyKeys);
+    // only the most recent keys are kept, retries happen shortly after the original request
+    var from = Math.max(0, sent.size() - MAX_RECENTLY_SENT);
+    return new OutboxState(stillPending, sent.subList(from, sent.size()));
+  }
+}
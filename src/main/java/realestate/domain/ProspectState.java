@@ -1,12 +1,17 @@
 package realestate.domain;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 
-public record ProspectState(Status status, String email, List<Message> unreadMessages, long lastUpdated, Optional<PropertyDetails> details) {
+public record ProspectState(Status status, String email, List<Message> unreadMessages, long lastUpdated, ClientDetails details, int readCursor, Summary summary, int failedAttempts, SeenMessages seen, long pendingSince) {
 
   public enum Status {
     COLLECT,
@@ -14,10 +19,70 @@ public record ProspectState(Status status, String email, List<Message> unreadMes
     WAITING_REPLY,
     CLOSED,
     FOLLOW_UP,
+    // waiting for capacity to call the LLM
+    QUEUED,
     ERROR
   }
 
-  public record PropertyDetails(String location, String type, String transactionType) {}
+  /**
+   * Client information known so far, any field can be null while still unknown.
+   */
+  public record ClientDetails(String name, String email, String phone, String location, String type, String transactionType) {
+
+    public static final ClientDetails EMPTY = new ClientDetails(null, null, null, null, null, null);
+
+    /**
+     * Fields known in {@code other} take precedence over the ones in this instance.
+     */
+    public ClientDetails merge(ClientDetails other) {
+      return new ClientDetails(
+          other.name != null ? other.name : name,
+          other.email != null ? other.email : email,
+          other.phone != null ? other.phone : phone,
+          other.location != null ? other.location : location,
+          other.type != null ? other.type : type,
+          other.transactionType != null ? other.transactionType : transactionType);
+    }
+
+    public int knownFields() {
+      return (int) Stream.of(name, email, phone, location, type, transactionType).filter(Objects::nonNull).count();
+    }
+
+    public boolean isComplete() {
+      return knownFields() == 6;
+    }
+
+    public boolean isEmpty() {
+      return knownFields() == 0;
+    }
+  }
+
+  /**
+   * What remains of the messages compacted out of the state: how many there were and a digest of the
+   * most recent ones. The client details known at that point stay in {@link ProspectState#details()}.
+   */
+  public record Summary(int compactedMessages, List<String> digests) {
+
+    public static final int MAX_DIGESTS = 100;
+
+    public static final Summary EMPTY = new Summary(0, List.of());
+
+    public Summary {
+      digests = digests != null ? List.copyOf(digests) : List.of();
+    }
+
+    public boolean isEmpty() {
+      return compactedMessages == 0;
+    }
+
+    Summary add(List<Message> compacted) {
+      var updated = new ArrayList<String>(digests.size() + compacted.size());
+      updated.addAll(digests);
+      compacted.forEach(message -> updated.add(message.digest()));
+      var from = Math.max(0, updated.size() - MAX_DIGESTS);
+      return new Summary(compactedMessages + compacted.size(), updated.subList(from, updated.size()));
+    }
+  }
 
   public enum SenderType {
     USER,
@@ -26,11 +91,41 @@ public record ProspectState(Status status, String email, List<Message> unreadMes
 
   public record Message(SenderType senderType, String sender, String subject, String content) {
 
+    // length of the fixed xml tags rendered around each message
+    private static final int TAGS_LENGTH = 55;
+
     public String toString() {
-      return "<from>" + sender + "</from>" +
-          "\n<subject>" + subject + "</subject>" +
-          "\n<content>" + content + "</content>" +
-          "\n\n";
+      return appendTo(new StringBuilder(renderedLength())).toString();
+    }
+
+    /**
+     * Number of chars used when rendering this message as part of a prompt.
+     */
+    public int renderedLength() {
+      return TAGS_LENGTH + length(sender) + length(subject) + length(content);
+    }
+
+    public StringBuilder appendTo(StringBuilder sb) {
+      return sb.append("<from>").append(sender).append("</from>")
+          .append("\n<subject>").append(subject).append("</subject>")
+          .append("\n<content>").append(content).append("</content>")
+          .append("\n\n");
+    }
+
+    /**
+     * Short hash identifying the message content.
+     */
+    public String digest() {
+      try {
+        var sha = MessageDigest.getInstance("SHA-256").digest(toString().getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(sha, 0, 8);
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private static int length(String value) {
+      return value == null ? 4 : value.length();
     }
 
     public static Message UserMessage(String sender, String subject, String content) {
@@ -40,48 +135,174 @@ public record ProspectState(Status status, String email, List<Message> unreadMes
 
 
   public ProspectState {
-    unreadMessages = unreadMessages != null ? new ArrayList<>(unreadMessages) : new ArrayList<>();
+    // no copy when the list already is a log, so transitions share the messages of the previous state
+    unreadMessages = MessageLog.of(unreadMessages);
+    details = details != null ? details : ClientDetails.EMPTY;
+    readCursor = Math.min(Math.max(readCursor, 0), unreadMessages.size());
+    summary = summary != null ? summary : Summary.EMPTY;
+    failedAttempts = Math.max(failedAttempts, 0);
+    seen = seen != null ? seen : SeenMessages.EMPTY;
   }
 
   public ProspectState(Status status, String email, List<Message> unreadMessages, long lastUpdated) {
-    this(status, email, unreadMessages, lastUpdated, Optional.empty());
+    this(status, email, unreadMessages, lastUpdated, ClientDetails.EMPTY, 0, Summary.EMPTY, 0, SeenMessages.EMPTY, 0L);
   }
 
   public boolean isWaitingReply() {
     return status == Status.WAITING_REPLY;
   }
 
+  public boolean isQueued() {
+    return status == Status.QUEUED;
+  }
+
+  /**
+   * Messages added since the last time the agent processed this prospect. Earlier messages are
+   * already part of the agent session memory and don't need to be sent again.
+   */
+  public List<Message> newMessages() {
+    return Collections.unmodifiableList(unreadMessages.subList(readCursor, unreadMessages.size()));
+  }
+
+  /**
+   * Number of messages received in this thread, including the compacted ones.
+   */
+  public int totalMessages() {
+    return summary.compactedMessages() + unreadMessages.size();
+  }
+
+  /**
+   * True until the agent processed the first messages of the thread.
+   */
+  public boolean isFirstContact() {
+    return readCursor == 0 && summary.isEmpty();
+  }
+
+  /**
+   * Replaces the oldest messages by the summary once the thread goes over the message or size budget,
+   * keeping at least the last {@code keepLast} messages. Messages not yet processed by the agent are
+   * always kept.
+   */
+  public ProspectState compact(int maxMessages, long maxChars, int keepLast) {
+    if (unreadMessages.size() <= maxMessages && renderedLength() <= maxChars) return this;
+
+    var keep = Math.max(keepLast, unreadMessages.size() - readCursor);
+    var drop = unreadMessages.size() - keep;
+    if (drop <= 0) return this;
+
+    var compacted = unreadMessages.subList(0, drop);
+    return new ProspectState(
+        status,
+        email,
+        MessageLog.of(List.copyOf(unreadMessages.subList(drop, unreadMessages.size()))),
+        lastUpdated,
+        details,
+        readCursor - drop,
+        summary.add(compacted),
+        failedAttempts,
+        seen,
+        pendingSince);
+  }
+
+  private long renderedLength() {
+    var length = 0L;
+    for (var message : unreadMessages) {
+      length += message.renderedLength();
+    }
+    return length;
+  }
+
+  public boolean hasNewMessages() {
+    return readCursor < unreadMessages.size();
+  }
+
+  /**
+   * Moves the read cursor to the end of the message list.
+   */
+  public ProspectState markAllRead() {
+    return new ProspectState(status, email, unreadMessages, lastUpdated, details, unreadMessages.size(), summary, failedAttempts, seen, pendingSince);
+  }
+
   public ProspectState waitingReply() {
-    return new ProspectState(Status.WAITING_REPLY, email, unreadMessages, System.currentTimeMillis());
+    return new ProspectState(Status.WAITING_REPLY, email, unreadMessages, System.currentTimeMillis(), details, readCursor, summary, failedAttempts, seen, pendingSince);
   }
 
   public ProspectState closed() {
-    return new ProspectState(Status.CLOSED, email, unreadMessages, System.currentTimeMillis());
+    return new ProspectState(Status.CLOSED, email, unreadMessages, System.currentTimeMillis(), details, readCursor, summary, failedAttempts, seen, pendingSince);
+  }
+
+  public ProspectState queued() {
+    return new ProspectState(Status.QUEUED, email, unreadMessages, System.currentTimeMillis(), details, readCursor, summary, failedAttempts, seen, pendingSince);
+  }
+
+  /**
+   * Back to collecting details, e.g. when a workflow in error is resumed, with a fresh count of failed attempts.
+   */
+  public ProspectState resumed() {
+    return new ProspectState(Status.COLLECT, email, unreadMessages, System.currentTimeMillis(), details, readCursor, summary, 0, seen, pendingSince);
+  }
+
+  /**
+   * Counts a failed agent call, consecutive failures increase the time before the next attempt.
+   */
+  public ProspectState agentCallFailed() {
+    return new ProspectState(status, email, unreadMessages, System.currentTimeMillis(), details, readCursor, summary, failedAttempts + 1, seen, pendingSince);
+  }
+
+  public ProspectState agentCallSucceeded() {
+    if (failedAttempts == 0) return this;
+    return new ProspectState(status, email, unreadMessages, lastUpdated, details, readCursor, summary, 0, seen, pendingSince);
   }
 
   public ProspectState error() {
-    return new ProspectState(Status.ERROR, email, unreadMessages, System.currentTimeMillis());
+    return new ProspectState(Status.ERROR, email, unreadMessages, System.currentTimeMillis(), details, readCursor, summary, failedAttempts, seen, pendingSince);
   }
 
 
   public ProspectState followUpRequired() {
-    return new ProspectState(Status.FOLLOW_UP, email, unreadMessages, System.currentTimeMillis());
+    return new ProspectState(Status.FOLLOW_UP, email, unreadMessages, System.currentTimeMillis(), details, readCursor, summary, failedAttempts, seen, pendingSince);
   }
 
   public ProspectState addUnreadMessage(Message message) {
-    var updatedList = new ArrayList<>(unreadMessages);
-    updatedList.add(message);
-    return new ProspectState(status, email, updatedList, System.currentTimeMillis());
+    var now = System.currentTimeMillis();
+    return new ProspectState(status, email, messageLog().append(message), now, details, readCursor, summary, failedAttempts, seen, pendingSince(now));
+  }
+
+  public ProspectState addUnreadMessages(List<Message> messages) {
+    var now = System.currentTimeMillis();
+    return new ProspectState(status, email, messageLog().appendAll(messages), now, details, readCursor, summary, failedAttempts, seen, pendingSince(now));
+  }
+
+  /**
+   * Time at which the oldest message not yet processed arrived.
+   */
+  private long pendingSince(long now) {
+    return hasNewMessages() ? pendingSince : now;
+  }
+
+  /**
+   * Whether a message with this id, a Message-ID or a content digest, was recently received.
+   */
+  public boolean hasSeen(String messageId) {
+    return seen.contains(messageId);
+  }
+
+  public ProspectState withSeen(String messageId) {
+    return new ProspectState(status, email, unreadMessages, lastUpdated, details, readCursor, summary, failedAttempts, seen.add(messageId), pendingSince);
   }
 
   public ProspectState withEmail(String email) {
-    return new ProspectState(status, email, unreadMessages, System.currentTimeMillis());
+    return new ProspectState(status, email, unreadMessages, System.currentTimeMillis(), details, readCursor, summary, failedAttempts, seen, pendingSince);
+  }
+
+  public ProspectState withDetails(ClientDetails details) {
+    return new ProspectState(status, email, unreadMessages, System.currentTimeMillis(), details, readCursor, summary, failedAttempts, seen, pendingSince);
   }
 
-  public ProspectState withDetails(String location, String type, String transactionType) {
-    return new ProspectState(status, email, unreadMessages, System.currentTimeMillis(), Optional.of(new PropertyDetails(location, type, transactionType)));
+  private MessageLog messageLog() {
+    return (MessageLog) unreadMessages;
   }
 
   public static final ProspectState EMPTY =
-      new ProspectState(Status.COLLECT, "", new ArrayList<>(), 0L);
-}
\ No newline at end of file
+      new ProspectState(Status.COLLECT, "", MessageLog.EMPTY, 0L);
+}
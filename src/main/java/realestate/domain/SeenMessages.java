@@ -0,0 +1,85 @@
+package realestate.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ids of the most recent messages of a thread, used to drop redelivered emails. A small Bloom filter
+ * answers most lookups for new messages without scanning the ids, and is rebuilt from the kept ids
+ * once the oldest ones start to be dropped, so it doesn't fill up over time.
+ */
+public record SeenMessages(long[] bloom, List<String> recent) {
+
+  public static final int MAX_RECENT = 64;
+
+  private static final int BLOOM_BITS = 1024;
+  private static final int HASHES = 3;
+
+  public static final SeenMessages EMPTY = new SeenMessages(new long[BLOOM_BITS / 64], List.of());
+
+  public SeenMessages {
+    bloom = bloom != null && bloom.length == BLOOM_BITS / 64 ? bloom : rebuild(recent);
+    recent = recent != null ? List.copyOf(recent) : List.of();
+  }
+
+  public boolean contains(String id) {
+    return mightContain(bloom, id) && recent.contains(id);
+  }
+
+  public SeenMessages add(String id) {
+    if (contains(id)) return this;
+
+    var updated = new ArrayList<String>(Math.min(recent.size() + 1, MAX_RECENT));
+    updated.addAll(recent.size() < MAX_RECENT ? recent : recent.subList(1, recent.size()));
+    updated.add(id);
+
+    var bits = bloom.clone();
+    set(bits, id);
+    // bits of dropped ids stay set, start over from the kept ids before the filter stops being useful
+    if (bitCount(bits) > BLOOM_BITS / 2) bits = rebuild(updated);
+    return new SeenMessages(bits, updated);
+  }
+
+  private static int bitCount(long[] bits) {
+    var count = 0;
+    for (var word : bits) count += Long.bitCount(word);
+    return count;
+  }
+
+  private static long[] rebuild(List<String> ids) {
+    var bits = new long[BLOOM_BITS / 64];
+    if (ids != null) {
+      for (var id : ids) set(bits, id);
+    }
+    return bits;
+  }
+
+  private static void set(long[] bits, String id) {
+    var h1 = id.hashCode();
+    var h2 = mix(h1);
+    for (int i = 0; i < HASHES; i++) {
+      var bit = Math.floorMod(h1 + i * h2, BLOOM_BITS);
+      bits[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  private static boolean mightContain(long[] bits, String id) {
+    var h1 = id.hashCode();
+    var h2 = mix(h1);
+    for (int i = 0; i < HASHES; i++) {
+      var bit = Math.floorMod(h1 + i * h2, BLOOM_BITS);
+      if ((bits[bit >>> 6] & (1L << bit)) == 0) return false;
+    }
+    return true;
+  }
+
+  // second hash for double hashing, from the murmur3 finalizer
+  private static int mix(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h | 1;
+  }
+}
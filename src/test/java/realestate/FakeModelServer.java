@@ -0,0 +1,90 @@
+package realestate;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for an OpenAI compatible chat completions API, for load tests. Each reply
+ * is delayed by a sampled latency plus a time per sampled completion token, and reports the
+ * sampled token counts as usage. The reply is {@code ALL_INFO_COLLECTED} once the conversation
+ * contains {@link #CLOSING_MARKER}, {@code WAIT_REPLY} otherwise.
+ */
+public class FakeModelServer implements AutoCloseable {
+
+  public static final String CLOSING_MARKER = "That is all the information you need";
+
+  /**
+   * Normal distribution clipped at zero.
+   */
+  public record Distribution(double mean, double stddev) {
+    long sample() {
+      return Math.max(0L, Math.round(mean + stddev * ThreadLocalRandom.current().nextGaussian()));
+    }
+  }
+
+  public record Settings(Distribution latencyMs, Distribution completionTokens, double msPerToken) {}
+
+  private final Settings settings;
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final AtomicLong requests = new AtomicLong();
+
+  public FakeModelServer(Settings settings) throws IOException {
+    this.settings = settings;
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/v1/chat/completions", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * Base url to configure as {@code akka.javasdk.agent.openai.base-url}.
+   */
+  public String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + "/v1";
+  }
+
+  public long requests() {
+    return requests.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      var request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+      var id = requests.incrementAndGet();
+
+      var completionTokens = Math.max(1L, settings.completionTokens().sample());
+      var delay = settings.latencyMs().sample() + Math.round(completionTokens * settings.msPerToken());
+      Thread.sleep(delay);
+
+      var status = request.contains(CLOSING_MARKER) ? "ALL_INFO_COLLECTED" : "WAIT_REPLY";
+      var promptTokens = request.length() / 4;
+      var body = """
+          {"id":"chatcmpl-%d","object":"chat.completion","created":%d,"model":"fake",\
+          "choices":[{"index":0,"message":{"role":"assistant","content":"{\\"status\\":\\"%s\\"}"},"finish_reason":"stop"}],\
+          "usage":{"prompt_tokens":%d,"completion_tokens":%d,"total_tokens":%d}}"""
+          .formatted(id, System.currentTimeMillis() / 1000, status, promptTokens, completionTokens, promptTokens + completionTokens)
+          .getBytes(StandardCharsets.UTF_8);
+
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.close();
+  }
+}
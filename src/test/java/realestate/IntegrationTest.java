@@ -1,16 +1,24 @@
 package realestate;
 
+import akka.http.javadsl.model.ContentType;
+import akka.http.javadsl.model.ContentTypes;
 import akka.javasdk.testkit.TestKit;
 import akka.javasdk.testkit.TestModelProvider;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import akka.javasdk.testkit.TestKitSupport;
+import realestate.api.EmailEndpoint;
+import realestate.application.ClientsByPropertyView;
+import realestate.application.Tenants;
 import realestate.application.CustomerServiceAgent;
 import realestate.application.ProspectProcessingWorkflow;
 import realestate.domain.ProspectState;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -29,7 +37,10 @@ public class IntegrationTest extends TestKitSupport {
     return TestKit.Settings.DEFAULT
         .withAdditionalConfig("akka.javasdk.agent.openai.api-key = n/a")
         .withModelProvider(CustomerServiceAgent.class, testModelProvider)
-        .withAdditionalConfig("realestate.follow-up.timer = 5s");
+        .withAdditionalConfig("realestate.follow-up { after = 5s, sweep-interval = 1s }")
+        .withAdditionalConfig("realestate.ingest.debounce = 500ms")
+        .withAdditionalConfig("realestate.ingest.batch.max-size = 10")
+        .withAdditionalConfig("realestate.llm-resilience { max-attempts = 2, backoff { min = 100ms, max = 200ms }, circuit-breaker.open-for = 1s }");
   }
 
   @BeforeEach
@@ -38,6 +49,13 @@ public class IntegrationTest extends TestKitSupport {
     testModelProvider.reset();
   }
 
+  /**
+   * Structured reply of the agent with the given status and no extracted details.
+   */
+  private static String agentReply(String status) {
+    return "{\"status\": \"" + status + "\"}";
+  }
+
   private void assertWorkflowStatus(String workflowId, ProspectState.Status expectedStatus) {
     // Wait for workflow to transition to waiting state
     Awaitility.await()
@@ -60,7 +78,7 @@ public class IntegrationTest extends TestKitSupport {
     // Given: Mock LLM response indicating all information is collected - match XML format
     testModelProvider
         .whenMessage(message -> message.contains("complete@inquiry.com"))
-        .reply("ALL_INFO_COLLECTED");
+        .reply(agentReply("ALL_INFO_COLLECTED"));
 
     String customerEmail = "complete@inquiry.com";
 
@@ -84,13 +102,71 @@ public class IntegrationTest extends TestKitSupport {
     assertWorkflowStatus(customerEmail, CLOSED);
   }
 
+  @Test
+  public void shouldProcessSeveralEmailsFromSameSenderInOneCommand() throws Exception {
+    String customerEmail = "batch@inquiry.com";
+    testModelProvider
+        .whenMessage(message -> message.contains(customerEmail) && message.contains("922222222"))
+        .reply(agentReply("ALL_INFO_COLLECTED"));
+
+    var processMessagesCmd = new ProspectProcessingWorkflow.ProcessMessages(List.of(
+        new ProspectProcessingWorkflow.ProcessMessage(
+            customerEmail,
+            "Buy house in Lisbon",
+            "Hi, I want to buy a house in Lisbon."),
+        new ProspectProcessingWorkflow.ProcessMessage(
+            customerEmail,
+            "Re: Buy house in Lisbon",
+            "My name is Jane Doe, phone 922222222.")
+    ));
+
+    var response = componentClient
+        .forWorkflow(customerEmail)
+        .method(ProspectProcessingWorkflow::processNewEmails)
+        .invoke(processMessagesCmd);
+
+    assertEquals("Processing started", response);
+
+    assertWorkflowStatus(customerEmail, CLOSED);
+  }
+
+  @Test
+  public void shouldIndexCollectedClientsByProperty() throws Exception {
+    String customerEmail = "indexed@inquiry.com";
+
+    // all details are in the email, so they are saved without asking the LLM
+    componentClient
+        .forWorkflow(customerEmail)
+        .method(ProspectProcessingWorkflow::processNewEmail)
+        .invoke(new ProspectProcessingWorkflow.ProcessMessage(
+            customerEmail,
+            "Buy a house in Lisbon",
+            "Hello, my name is Jane Roe. I want to buy a house in Lisbon. My phone number is 933333333."));
+
+    assertWorkflowStatus(customerEmail, CLOSED);
+
+    Awaitility.await()
+        .atMost(Duration.ofSeconds(10))
+        .untilAsserted(() -> {
+          var page = componentClient.forView()
+              .method(ClientsByPropertyView::getByAll)
+              .invoke(new ClientsByPropertyView.ByAll(Tenants.DEFAULT, "lisbon", "house", "buy", "", 10));
+
+          assertEquals(1, page.clients().size());
+          var client = page.clients().getFirst();
+          assertEquals(customerEmail, client.email());
+          assertEquals("Jane Roe", client.name());
+          assertEquals("Lisbon, Portugal", client.location());
+        });
+  }
+
   @Test
   public void shouldRequestFollowUpWhenInformationIncomplete() throws Exception {
     String customerEmail = "follow@up.com";
     // Given: Mock LLM response indicating more information is needed - match XML format
     testModelProvider
         .whenMessage(message -> message.contains(customerEmail))
-        .reply("WAIT_REPLY");
+        .reply(agentReply("WAIT_REPLY"));
 
     // When: Process an incomplete email
     var processMessageCmd = new ProspectProcessingWorkflow.ProcessMessage(
@@ -114,7 +190,7 @@ public class IntegrationTest extends TestKitSupport {
     var customerEmail = "john@doe.com";
     testModelProvider
         .whenMessage(message -> message.contains("john@doe.com") & !message.contains("123456789"))
-        .reply("WAIT_REPLY");
+        .reply(agentReply("WAIT_REPLY"));
 
     // Process initial incomplete email
     var initialMessage = new ProspectProcessingWorkflow.ProcessMessage(
@@ -133,7 +209,7 @@ public class IntegrationTest extends TestKitSupport {
     // Given: Mock response for complete information - match the XML format for follow-up message
     testModelProvider
         .whenMessage(message -> message.contains(customerEmail) && message.contains("123456789"))
-        .reply("ALL_INFO_COLLECTED");
+        .reply(agentReply("ALL_INFO_COLLECTED"));
 
     // When: Customer provides additional information
     var followUpMessage = new ProspectProcessingWorkflow.ProcessMessage(
@@ -160,7 +236,7 @@ public class IntegrationTest extends TestKitSupport {
     // Given: Mock LLM response indicating wait for reply - match XML format
     testModelProvider
         .whenMessage(message -> message.contains(customerEmail))
-        .reply("WAIT_REPLY");
+        .reply(agentReply("WAIT_REPLY"));
 
     // When: Process email that requires follow-up
     var processMessageCmd = new ProspectProcessingWorkflow.ProcessMessage(
@@ -207,6 +283,51 @@ public class IntegrationTest extends TestKitSupport {
   }
 
 
+  @Test
+  public void shouldRetryAgentCallAfterTransientFailure() {
+    var customerEmail = "flaky@test.com";
+    var calls = new AtomicInteger();
+    testModelProvider
+        .whenMessage(message -> message.contains(customerEmail) && calls.getAndIncrement() == 0)
+        .failWith(new RuntimeException("Simulated outage"));
+    testModelProvider
+        .whenMessage(message -> message.contains(customerEmail))
+        .reply(agentReply("WAIT_REPLY"));
+
+    componentClient
+        .forWorkflow(customerEmail)
+        .method(ProspectProcessingWorkflow::processNewEmail)
+        .invoke(new ProspectProcessingWorkflow.ProcessMessage(customerEmail, "Looking for a place", "Do you have anything available?"));
+
+    assertWorkflowStatus(customerEmail, WAITING_REPLY);
+  }
+
+
+  @Test
+  public void shouldIgnoreRedeliveredEmail() {
+    var customerEmail = "redelivered@test.com";
+    testModelProvider
+        .whenMessage(message -> message.contains(customerEmail))
+        .reply(agentReply("WAIT_REPLY"));
+
+    var email = new ProspectProcessingWorkflow.ProcessMessage(
+        customerEmail, "Looking for a place", "Do you have anything available?", "<abc-123@mail.test>");
+
+    var first = componentClient
+        .forWorkflow(customerEmail)
+        .method(ProspectProcessingWorkflow::processNewEmail)
+        .invoke(email);
+    var redelivered = componentClient
+        .forWorkflow(customerEmail)
+        .method(ProspectProcessingWorkflow::processNewEmail)
+        .invoke(email);
+
+    assertEquals("Processing started", first);
+    assertEquals("Duplicate email ignored", redelivered);
+    assertWorkflowStatus(customerEmail, WAITING_REPLY);
+  }
+
+
   @Test
   public void shouldHandleMultipleCustomersSimultaneously() throws Exception {
     var customer1 = "customer1@test.com";
@@ -215,11 +336,11 @@ public class IntegrationTest extends TestKitSupport {
     // Given: Different responses for different customers - match XML format
     testModelProvider
         .whenMessage(message -> message.contains(customer1) && message.contains("111-1111"))
-        .reply("ALL_INFO_COLLECTED");
+        .reply(agentReply("ALL_INFO_COLLECTED"));
 
     testModelProvider
         .whenMessage(message -> message.contains(customer2))
-        .reply("WAIT_REPLY");
+        .reply(agentReply("WAIT_REPLY"));
 
     // When: Process emails from multiple customers
     var customer1Message = new ProspectProcessingWorkflow.ProcessMessage(
@@ -252,4 +373,96 @@ public class IntegrationTest extends TestKitSupport {
     assertWorkflowStatus(customer1, CLOSED);
     assertWorkflowStatus(customer2, WAITING_REPLY);
   }
-}
\ No newline at end of file
+
+  private EmailEndpoint.BatchResult postBatch(ContentType contentType, String body) {
+    return httpClient.POST("/emails/batch")
+        .withRequestBody(contentType, body.getBytes(StandardCharsets.UTF_8))
+        .responseBodyAs(EmailEndpoint.BatchResult.class)
+        .invoke()
+        .body();
+  }
+
+  @Test
+  public void shouldAcceptBatchOfEmailsAsJsonArray() {
+    testModelProvider
+        .whenMessage(message -> message.contains("array1@batch.com") || message.contains("array2@batch.com"))
+        .reply(agentReply("WAIT_REPLY"));
+
+    var result = postBatch(ContentTypes.APPLICATION_JSON, """
+        [
+          {"sender": "array1@batch.com", "subject": "Flat", "content": "Anything available?"},
+          {"sender": "array2@batch.com", "subject": "", "content": "No subject"},
+          {"sender": "array2@batch.com", "subject": "House", "content": "Anything available?"}
+        ]
+        """);
+
+    assertEquals(2, result.accepted());
+    assertEquals(1, result.rejected());
+    assertEquals(
+        List.of(EmailEndpoint.BatchItemStatus.ACCEPTED, EmailEndpoint.BatchItemStatus.REJECTED, EmailEndpoint.BatchItemStatus.ACCEPTED),
+        result.results().stream().map(EmailEndpoint.BatchItemResult::status).toList());
+    assertEquals(List.of(0, 1, 2), result.results().stream().map(EmailEndpoint.BatchItemResult::index).toList());
+    assertEquals("subject cannot be empty", result.results().get(1).error());
+
+    assertWorkflowStatus("array1@batch.com", WAITING_REPLY);
+    assertWorkflowStatus("array2@batch.com", WAITING_REPLY);
+  }
+
+  @Test
+  public void shouldAcceptBatchOfEmailsAsNewlineDelimitedJson() {
+    testModelProvider
+        .whenMessage(message -> message.contains("ndjson@batch.com"))
+        .reply(agentReply("WAIT_REPLY"));
+
+    var result = postBatch(ContentTypes.TEXT_PLAIN_UTF8, """
+        {"sender": "ndjson@batch.com", "subject": "Flat", "content": "Anything available?"}
+        {"sender": "acme:ndjson@batch.com", "subject": "Flat", "content": "Not a valid sender"}
+
+        {"sender": "ndjson@batch.com", "subject": "Re: Flat", "content": "In Porto please."}
+        """);
+
+    assertEquals(2, result.accepted());
+    assertEquals(1, result.rejected());
+    var rejected = result.results().get(1);
+    assertEquals(EmailEndpoint.BatchItemStatus.REJECTED, rejected.status());
+    assertEquals("acme:ndjson@batch.com", rejected.sender());
+    assertEquals(EmailEndpoint.BatchItemStatus.ACCEPTED, result.results().get(2).status());
+
+    assertWorkflowStatus("ndjson@batch.com", WAITING_REPLY);
+  }
+
+  @Test
+  public void shouldRejectBatchOverMaxSize() {
+    var body = new StringBuilder();
+    for (int i = 0; i < 11; i++) {
+      body.append("{\"sender\": \"big").append(i).append("@batch.com\", \"subject\": \"Flat\", \"content\": \"Anything available?\"}\n");
+    }
+
+    assertThrows(RuntimeException.class, () -> postBatch(ContentTypes.TEXT_PLAIN_UTF8, body.toString()));
+    assertThrows(RuntimeException.class, () -> postBatch(ContentTypes.APPLICATION_JSON, "[" + body.toString().strip().replace("\n", ",") + "]"));
+  }
+
+  @Test
+  public void shouldProcessBurstOfEmailsWithinDebounceWindowInOneAgentCall() {
+    var customerEmail = "burst@debounce.com";
+    var calls = new AtomicInteger();
+    testModelProvider
+        .whenMessage(message -> message.contains(customerEmail) && calls.incrementAndGet() > 0)
+        .reply(agentReply("WAIT_REPLY"));
+
+    // well within the 500ms window configured for the tests, each email restarts it
+    for (int i = 0; i < 3; i++) {
+      componentClient
+          .forWorkflow(customerEmail)
+          .method(ProspectProcessingWorkflow::processNewEmail)
+          .invoke(new ProspectProcessingWorkflow.ProcessMessage(customerEmail, "Looking for a place " + i, "Part " + i + " of my enquiry."));
+    }
+
+    assertWorkflowStatus(customerEmail, WAITING_REPLY);
+    // give a second call, if any, time to happen
+    Awaitility.await()
+        .during(Duration.ofSeconds(1))
+        .atMost(Duration.ofSeconds(3))
+        .untilAsserted(() -> assertEquals(1, calls.get()));
+  }
+}
@@ -0,0 +1,186 @@
+package realestate;
+
+import akka.javasdk.testkit.TestKit;
+import akka.javasdk.testkit.TestKitSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import realestate.api.EmailEndpoint;
+import realestate.application.Metrics;
+import realestate.application.ProspectProcessingWorkflow;
+import realestate.domain.ProspectState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives {@link EmailEndpoint} with many concurrent senders, each one sending a thread of emails
+ * the last of which completes the enquiry, against a {@link FakeModelServer}. Reports the ingest
+ * throughput, the time until each prospect is {@code CLOSED} and the latency percentiles recorded
+ * by the service for each workflow step.
+ * <p>
+ * Only runs with the {@code load-test} profile, settings are read from {@code load.*} system properties:
+ * <pre>
+ * mvn -Pload-test test -Dload.senders=5000 -Dload.model.latency-ms=800
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "realestate.load-test", matches = "true")
+public class LoadTest extends TestKitSupport {
+
+  private final int senders = Integer.getInteger("load.senders", 1000);
+  private final int emailsPerThread = Integer.getInteger("load.emails-per-thread", 3);
+  private final Duration thinkTime = Duration.ofMillis(Long.getLong("load.think-time-ms", 1000));
+  private final Duration rampUp = Duration.ofMillis(Long.getLong("load.ramp-up-ms", 5000));
+  private final Duration pollInterval = Duration.ofMillis(Long.getLong("load.poll-interval-ms", 500));
+  private final Duration timeout = Duration.ofMillis(Long.getLong("load.timeout-ms", 600_000));
+  // bounds the requests in flight from the test, so it measures the service rather than the client pool
+  private final Semaphore inFlight = new Semaphore(Integer.getInteger("load.max-in-flight", 256));
+
+  private final FakeModelServer.Settings modelSettings = new FakeModelServer.Settings(
+      new FakeModelServer.Distribution(doubleProperty("load.model.latency-ms", 300), doubleProperty("load.model.latency-stddev-ms", 100)),
+      new FakeModelServer.Distribution(doubleProperty("load.model.completion-tokens", 150), doubleProperty("load.model.completion-tokens-stddev", 50)),
+      doubleProperty("load.model.ms-per-token", 1.0));
+
+  private FakeModelServer modelServer;
+
+  @Override
+  protected TestKit.Settings testKitSettings() {
+    try {
+      modelServer = new FakeModelServer(modelSettings);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    var settings = TestKit.Settings.DEFAULT
+        .withAdditionalConfig("akka.javasdk.agent.openai { api-key = n/a, base-url = \"" + modelServer.baseUrl() + "\" }")
+        // the fake model always replies as expected, escalation would only add a second fake call
+        .withAdditionalConfig("realestate.model-routing.escalation-model = \"\"")
+        .withAdditionalConfig("akka.http.host-connection-pool { max-connections = 64, max-open-requests = 1024 }");
+    var debounce = System.getProperty("load.debounce");
+    if (debounce != null)
+      settings = settings.withAdditionalConfig("realestate.ingest.debounce = " + debounce);
+    var maxConcurrent = System.getProperty("load.llm-max-concurrent");
+    if (maxConcurrent != null)
+      settings = settings.withAdditionalConfig("realestate.llm-admission.max-concurrent = " + maxConcurrent);
+    return settings;
+  }
+
+  @AfterAll
+  void stopModelServer() {
+    if (modelServer != null) modelServer.close();
+  }
+
+  @Test
+  public void loadTest() throws Exception {
+    var ingestLatencies = new ConcurrentLinkedQueue<Long>();
+    var timesToClosed = new ConcurrentLinkedQueue<Long>();
+    var rejected = new AtomicInteger();
+    var notClosed = new AtomicInteger();
+    var lastIngest = new AtomicLong();
+
+    var start = System.nanoTime();
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < senders; i++) {
+        var sender = "load-" + i + "@example.com";
+        var startDelay = rampUp.toMillis() * i / senders;
+        executor.submit(() -> {
+          Thread.sleep(startDelay);
+          var threadStart = System.nanoTime();
+          for (int n = 1; n <= emailsPerThread; n++) {
+            if (n > 1) Thread.sleep(thinkTime.toMillis());
+            var email = email(sender, n);
+            var sent = System.nanoTime();
+            try {
+              limited(() -> httpClient.POST("/emails").withRequestBody(email).invoke());
+            } catch (RuntimeException e) {
+              // error responses are thrown by the client
+              rejected.incrementAndGet();
+            }
+            ingestLatencies.add(Duration.ofNanos(System.nanoTime() - sent).toMillis());
+            lastIngest.accumulateAndGet(System.nanoTime(), Math::max);
+          }
+
+          var deadline = System.nanoTime() + timeout.toNanos();
+          while (System.nanoTime() < deadline) {
+            var status = limited(() -> componentClient.forWorkflow(sender)
+                .method(ProspectProcessingWorkflow::status)
+                .invoke());
+            if (status == ProspectState.Status.CLOSED) {
+              timesToClosed.add(Duration.ofNanos(System.nanoTime() - threadStart).toMillis());
+              return null;
+            }
+            Thread.sleep(pollInterval.toMillis());
+          }
+          notClosed.incrementAndGet();
+          return null;
+        });
+      }
+    }
+    var total = Duration.ofNanos(System.nanoTime() - start);
+
+    var emails = ingestLatencies.size();
+    var ingestWindow = Duration.ofNanos(lastIngest.get() - start);
+    var metrics = httpClient.GET("/metrics").responseBodyAs(Metrics.Snapshot.class).invoke().body();
+
+    var report = new StringBuilder()
+        .append("\n=== Load test: %d senders, %d emails per thread, %d model calls in %ds ===\n"
+            .formatted(senders, emailsPerThread, modelServer.requests(), total.toSeconds()))
+        .append("ingest:         %d emails in %.1fs, %.1f emails/s, %d rejected\n"
+            .formatted(emails, ingestWindow.toMillis() / 1000.0, emails * 1000.0 / Math.max(1, ingestWindow.toMillis()), rejected.get()))
+        .append("request:        %s\n".formatted(percentiles(ingestLatencies)))
+        .append("time to CLOSED: %s, %d not closed\n".formatted(percentiles(timesToClosed), notClosed.get()))
+        .append("service side histograms, upper bounds of the p50/p99 buckets:\n");
+    metrics.histograms().forEach((name, histogram) ->
+        report.append("  %-36s count %6d  p50 %6d  p99 %6d\n".formatted(name, histogram.count(), histogram.p50(), histogram.p99())));
+    System.out.println(report);
+
+    assertEquals(0, rejected.get(), "rejected emails");
+    assertEquals(0, notClosed.get(), "prospects not closed within " + timeout);
+  }
+
+  private EmailEndpoint.NewEmailReq email(String sender, int n) {
+    // unique content per sender and email, so neither the agent cache nor the dedup kicks in
+    var content = "Hello, following up on listing reference " + sender + "/" + n + ", could you send me more about it?";
+    if (n == emailsPerThread)
+      content += " " + FakeModelServer.CLOSING_MARKER + ".";
+    return new EmailEndpoint.NewEmailReq(sender, n == 1 ? "Enquiry" : "Re: Enquiry", content, sender + "-" + n);
+  }
+
+  private <T> T limited(Supplier<T> call) throws InterruptedException {
+    inFlight.acquire();
+    try {
+      return call.get();
+    } finally {
+      inFlight.release();
+    }
+  }
+
+  private static String percentiles(ConcurrentLinkedQueue<Long> values) {
+    if (values.isEmpty()) return "no samples";
+    List<Long> sorted = new ArrayList<>(values);
+    Collections.sort(sorted);
+    return "p50 %dms, p99 %dms, max %dms".formatted(
+        percentile(sorted, 0.5), percentile(sorted, 0.99), sorted.getLast());
+  }
+
+  private static long percentile(List<Long> sorted, double quantile) {
+    var rank = (int) Math.ceil(quantile * sorted.size());
+    return sorted.get(Math.max(0, rank - 1));
+  }
+
+  private static double doubleProperty(String name, double defaultValue) {
+    var value = System.getProperty(name);
+    return value == null ? defaultValue : Double.parseDouble(value);
+  }
+}
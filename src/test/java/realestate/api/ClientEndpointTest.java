@@ -0,0 +1,18 @@
+package realestate.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientEndpointTest {
+
+  @Test
+  public void shouldQuoteCsvValuesThatWouldBreakTheRow() {
+    assertEquals("", ClientEndpoint.csv(null));
+    assertEquals("Porto Portugal", ClientEndpoint.csv("Porto Portugal"));
+    assertEquals("\"Porto, Portugal\"", ClientEndpoint.csv("Porto, Portugal"));
+    assertEquals("\"John \"\"JD\"\" Doe\"", ClientEndpoint.csv("John \"JD\" Doe"));
+    assertEquals("\"line\nbreak\"", ClientEndpoint.csv("line\nbreak"));
+    assertEquals("\"carriage\rreturn\"", ClientEndpoint.csv("carriage\rreturn"));
+  }
+}
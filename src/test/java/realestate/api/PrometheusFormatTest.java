@@ -0,0 +1,60 @@
+package realestate.api;
+
+import org.junit.jupiter.api.Test;
+import realestate.application.Metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrometheusFormatTest {
+
+  @Test
+  public void shouldRenderCountersGaugesAndHistograms() {
+    var metrics = new Metrics();
+    metrics.increment("extraction.hit");
+    metrics.increment("extraction.miss");
+    metrics.gauge("prospects.waiting_reply", 3);
+    for (long latency : new long[] {5, 20, 20, 700, 100_000_000}) {
+      metrics.observe("agent.call-latency-ms", latency, new long[] {10, 100, 1_000});
+    }
+
+    var text = PrometheusFormat.render(metrics.snapshot());
+
+    assertTrue(text.contains("# TYPE realestate_extraction_hit_total counter\nrealestate_extraction_hit_total 1\n"), text);
+    assertTrue(text.contains("realestate_extraction_hit_rate 0.5\n"), text);
+    assertTrue(text.contains("# TYPE realestate_prospects_waiting_reply gauge\nrealestate_prospects_waiting_reply 3\n"), text);
+    assertTrue(text.contains("""
+        # TYPE realestate_agent_call_latency_ms histogram
+        realestate_agent_call_latency_ms_bucket{le="10"} 1
+        realestate_agent_call_latency_ms_bucket{le="100"} 3
+        realestate_agent_call_latency_ms_bucket{le="1000"} 4
+        realestate_agent_call_latency_ms_bucket{le="+Inf"} 5
+        realestate_agent_call_latency_ms_sum 100000745
+        realestate_agent_call_latency_ms_count 5
+        """), text);
+  }
+
+  @Test
+  public void shouldEstimatePercentilesFromBuckets() {
+    var metrics = new Metrics();
+    for (int i = 1; i <= 100; i++) {
+      metrics.observe("latency", i * 10, Metrics.LATENCY_MS_BUCKETS);
+    }
+
+    var histogram = metrics.snapshot().histograms().get("latency");
+    assertEquals(100, histogram.count());
+    assertEquals(500, histogram.p50());
+    assertEquals(1_000, histogram.p99());
+  }
+
+  @Test
+  public void shouldReportLastBoundForPercentilesBeyondLastBucket() {
+    var metrics = new Metrics();
+    for (int i = 0; i < 10; i++) {
+      metrics.observe("latency", 100_000_000, new long[] {10, 100, 1_000});
+    }
+
+    var histogram = metrics.snapshot().histograms().get("latency");
+    assertEquals(1_000, histogram.p50());
+    assertEquals(1_000, histogram.p99());
+  }
+}
@@ -0,0 +1,60 @@
+package realestate.application;
+
+import org.junit.jupiter.api.Test;
+import realestate.domain.ProspectState;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgentResponseCacheTest {
+
+  private static final ProspectState.ClientDetails DETAILS =
+      new ProspectState.ClientDetails("John Doe", "john@doe.com", "911111111", "Porto, Portugal", null, "rent");
+
+  private static CustomerServiceAgent.ProcessEmailsResult result(CustomerServiceAgent.Status status) {
+    return new CustomerServiceAgent.ProcessEmailsResult(status,
+        new CustomerServiceAgent.ExtractedDetails("John Doe", "911111111", "Porto, Portugal", null, "rent"));
+  }
+
+  @Test
+  public void shouldShareDecisionsWithoutPersonalDetails() {
+    var calls = List.<AgentToolCalls.ToolCall>of(
+        new AgentToolCalls.ToolCall.SendEmail("Your enquiry", "Is it a house or an apartment you are looking for?"));
+
+    var shared = AgentResponseCache.CachedResponse.shareable(
+        result(CustomerServiceAgent.Status.WAIT_REPLY), calls, "john@doe.com", DETAILS).orElseThrow();
+
+    assertEquals(calls, shared.toolCalls());
+    assertNull(shared.result().details().name());
+    assertNull(shared.result().details().phoneNumber());
+    assertEquals("Porto, Portugal", shared.result().details().location());
+  }
+
+  @Test
+  public void shouldNotShareDecisionsWithPersonalSideEffects() {
+    var greeting = List.<AgentToolCalls.ToolCall>of(
+        new AgentToolCalls.ToolCall.SendEmail("Your enquiry", "Dear John, is it a house or an apartment?"));
+    var saved = List.<AgentToolCalls.ToolCall>of(
+        new AgentToolCalls.ToolCall.SaveCustomerInfo("John Doe", "911111111", "Porto, Portugal", "apartment", "rent"));
+
+    assertTrue(AgentResponseCache.CachedResponse.shareable(
+        result(CustomerServiceAgent.Status.WAIT_REPLY), greeting, "john@doe.com", DETAILS).isEmpty());
+    assertTrue(AgentResponseCache.CachedResponse.shareable(
+        result(CustomerServiceAgent.Status.ALL_INFO_COLLECTED), saved, "john@doe.com", DETAILS).isEmpty());
+  }
+
+  @Test
+  public void shouldKeyByKnownFieldsButNotTheirValues() {
+    var email = List.of(ProspectState.Message.UserMessage("john@doe.com", "Flat in Porto", "Any T2 to rent? Reply to john@doe.com"));
+    var jane = List.of(ProspectState.Message.UserMessage("jane@doe.com", "Flat in Porto", "Any T2 to rent? Reply to jane@doe.com"));
+    var john = new ProspectState.ClientDetails("John", "john@doe.com", null, null, null, null);
+
+    assertEquals(
+        AgentResponseCache.key("john@doe.com", john, email),
+        AgentResponseCache.key("jane@doe.com", new ProspectState.ClientDetails("Jane", "jane@doe.com", null, null, null, null), jane));
+    assertNotEquals(
+        AgentResponseCache.key("john@doe.com", john, email),
+        AgentResponseCache.key("jane@doe.com", ProspectState.ClientDetails.EMPTY, jane));
+  }
+}
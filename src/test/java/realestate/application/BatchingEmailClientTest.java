@@ -0,0 +1,70 @@
+package realestate.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchingEmailClientTest {
+
+  private final List<List<EmailClient.Email>> batches = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void shouldCoalesceEmailsOfConcurrentCallers() throws Exception {
+    var client = new BatchingEmailClient(recording(null), 10, Duration.ofMillis(200), 1);
+
+    try (var callers = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < 3; i++) {
+        var to = "customer" + i + "@doe.com";
+        callers.submit(() -> client.sendEmail(to, "Hi", "Hello"));
+      }
+      callers.shutdown();
+      assertTrue(callers.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    assertEquals(1, batches.size());
+    assertEquals(3, batches.getFirst().size());
+  }
+
+  @Test
+  public void shouldReportOnlyTheEmailsOfTheCallerThatWereSent() {
+    var client = new BatchingEmailClient(recording("eve@doe.com"), 10, Duration.ofMillis(10), 1);
+    var john = new EmailClient.Email("1", "john@doe.com", "Hi", "One");
+    var eve = new EmailClient.Email("2", "eve@doe.com", "Hi", "Two");
+
+    var failure = assertThrows(EmailClient.SendFailedException.class, () -> client.sendEmails(List.of(john, eve)));
+
+    assertEquals(List.of(john), failure.sent());
+  }
+
+  @Test
+  public void shouldRejectInvalidRecipientsBeforeBatching() {
+    var client = new BatchingEmailClient(recording(null), 10, Duration.ofMillis(10), 1);
+
+    assertThrows(IllegalArgumentException.class, () -> client.sendEmail(" ", "Hi", "Hello"));
+    assertTrue(batches.isEmpty());
+  }
+
+  /**
+   * Records the batches, sending stops at the email to the failing recipient.
+   */
+  private EmailClient recording(String failingRecipient) {
+    return new EmailClient() {
+      @Override
+      public void sendEmail(String to, String subject, String body) {
+        if (to.equals(failingRecipient)) throw new IllegalStateException("Mailbox unavailable");
+      }
+
+      @Override
+      public void sendEmails(List<Email> emails) {
+        batches.add(emails);
+        EmailClient.super.sendEmails(emails);
+      }
+    };
+  }
+}
@@ -0,0 +1,69 @@
+package realestate.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LlmCircuitBreakerTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final LlmCircuitBreaker breaker =
+      new LlmCircuitBreaker(3, Duration.ofSeconds(30), new Metrics(), now::get);
+
+  @Test
+  public void shouldOpenAfterConsecutiveFailures() {
+    breaker.recordFailure();
+    breaker.recordFailure();
+    breaker.recordSuccess();
+    breaker.recordFailure();
+    breaker.recordFailure();
+    assertTrue(breaker.allowRequest());
+
+    breaker.recordFailure();
+    assertEquals(LlmCircuitBreaker.State.OPEN, breaker.state());
+    assertFalse(breaker.allowRequest());
+    assertEquals(Duration.ofSeconds(30), breaker.retryAfter());
+  }
+
+  @Test
+  public void shouldLetOneProbeThroughOnceOpenForElapsed() {
+    openBreaker();
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+
+    assertTrue(breaker.allowRequest());
+    assertEquals(LlmCircuitBreaker.State.HALF_OPEN, breaker.state());
+    assertFalse(breaker.allowRequest());
+
+    breaker.recordSuccess();
+    assertEquals(LlmCircuitBreaker.State.CLOSED, breaker.state());
+    assertTrue(breaker.allowRequest());
+  }
+
+  @Test
+  public void shouldOpenAgainWhenProbeFails() {
+    openBreaker();
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    assertTrue(breaker.allowRequest());
+
+    breaker.recordFailure();
+    assertEquals(LlmCircuitBreaker.State.OPEN, breaker.state());
+    assertFalse(breaker.allowRequest());
+  }
+
+  @Test
+  public void shouldBackOffExponentiallyWithinBounds() {
+    var backoff = new Backoff(Duration.ofSeconds(2), Duration.ofMinutes(2), 0.3);
+    for (int attempt = 1; attempt <= 10; attempt++) {
+      var expected = Math.min(120_000L, 2_000L << (attempt - 1));
+      var delay = backoff.delay(attempt).toMillis();
+      assertTrue(delay <= expected && delay >= expected * 0.7, "attempt " + attempt + " waited " + delay);
+    }
+  }
+
+  private void openBreaker() {
+    for (int i = 0; i < 3; i++) breaker.recordFailure();
+  }
+}
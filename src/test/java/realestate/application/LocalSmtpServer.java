@@ -0,0 +1,122 @@
+package realestate.application;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server for tests, it accepts every email not to a rejected recipient and
+ * keeps it in memory.
+ */
+public class LocalSmtpServer implements AutoCloseable {
+
+  public record ReceivedEmail(String from, String to, String data) {}
+
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final List<ReceivedEmail> received = new CopyOnWriteArrayList<>();
+  private final AtomicInteger connections = new AtomicInteger();
+  private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+  public LocalSmtpServer() throws IOException {
+    this.serverSocket = new ServerSocket(0);
+    executor.submit(this::acceptLoop);
+  }
+
+  public int port() {
+    return serverSocket.getLocalPort();
+  }
+
+  public List<ReceivedEmail> received() {
+    return List.copyOf(received);
+  }
+
+  public int connections() {
+    return connections.get();
+  }
+
+  public void reject(String recipient) {
+    rejected.add(recipient);
+  }
+
+  private void acceptLoop() {
+    while (!serverSocket.isClosed()) {
+      try {
+        var socket = serverSocket.accept();
+        connections.incrementAndGet();
+        executor.submit(() -> handle(socket));
+      } catch (IOException e) {
+        // server closed
+      }
+    }
+  }
+
+  private void handle(Socket socket) {
+    try (socket) {
+      var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      var out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+      reply(out, "220 localhost ESMTP");
+
+      String from = null;
+      String to = null;
+      String line;
+      while ((line = in.readLine()) != null) {
+        var command = line.toUpperCase();
+        if (command.startsWith("EHLO")) {
+          reply(out, "250-localhost\r\n250-PIPELINING\r\n250 8BITMIME");
+        } else if (command.startsWith("MAIL FROM:")) {
+          from = address(line);
+          reply(out, "250 OK");
+        } else if (command.startsWith("RCPT TO:")) {
+          to = address(line);
+          reply(out, rejected.contains(to) ? "550 No such user" : "250 OK");
+        } else if (command.equals("DATA") && rejected.contains(to)) {
+          reply(out, "503 No valid recipients");
+        } else if (command.equals("DATA")) {
+          reply(out, "354 End data with <CR><LF>.<CR><LF>");
+          var data = new StringBuilder();
+          while (!(line = in.readLine()).equals(".")) {
+            data.append(line.startsWith("..") ? line.substring(1) : line).append('\n');
+          }
+          received.add(new ReceivedEmail(from, to, data.toString()));
+          reply(out, "250 OK");
+        } else if (command.equals("QUIT")) {
+          reply(out, "221 Bye");
+          return;
+        } else {
+          reply(out, "250 OK");
+        }
+      }
+    } catch (IOException e) {
+      // client went away
+    }
+  }
+
+  private static String address(String line) {
+    return line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+  }
+
+  private static void reply(Writer out, String reply) throws IOException {
+    out.write(reply);
+    out.write("\r\n");
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    executor.shutdownNow();
+  }
+}
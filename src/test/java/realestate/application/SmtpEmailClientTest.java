@@ -0,0 +1,96 @@
+package realestate.application;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmtpEmailClientTest {
+
+  private LocalSmtpServer server;
+  private SmtpEmailClient client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    server = new LocalSmtpServer();
+    client = new SmtpEmailClient(new SmtpEmailClient.Settings(
+        "localhost", server.port(), "agent@realestate.com", "", "", false,
+        1, Duration.ofSeconds(5), Duration.ofSeconds(30), 100, 100));
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  public void shouldSendSeveralEmailsOverOneConnection() {
+    client.sendEmails(List.of(
+        new EmailClient.Email("john@doe.com", "Missing info", "What is your phone number?"),
+        new EmailClient.Email("jane@doe.com", "Missing info", "What is your name?\n.\nThanks")));
+    client.sendEmail("john@doe.com", "Thanks", "We will be in touch.");
+
+    var received = server.received();
+    assertEquals(3, received.size());
+    assertEquals("agent@realestate.com", received.get(0).from());
+    assertEquals("john@doe.com", received.get(0).to());
+    assertTrue(received.get(1).data().contains("What is your name?\n.\nThanks"));
+    assertTrue(received.get(2).data().contains("Subject: Thanks"));
+    assertEquals(1, server.connections());
+  }
+
+  @Test
+  public void shouldNotLetHeadersOrBodyInjectContent() {
+    client.sendEmail("john@doe.com", "Hello\r\nBcc: eve@evil.com", "one\rtwo\r\n.\rthree");
+
+    var data = server.received().getFirst().data();
+    assertTrue(data.contains("Subject: Hello Bcc: eve@evil.com\n"), data);
+    assertFalse(data.contains("\nBcc:"), data);
+    assertTrue(data.contains("one\ntwo\n.\nthree"), data);
+  }
+
+  @Test
+  public void shouldRejectInvalidRecipients() {
+    assertThrows(IllegalArgumentException.class,
+        () -> client.sendEmail("john@doe.com>\r\nRCPT TO:<eve@evil.com", "Hi", "Hello"));
+    assertThrows(IllegalArgumentException.class, () -> client.sendEmail("not an address", "Hi", "Hello"));
+    assertTrue(server.received().isEmpty());
+  }
+
+  @Test
+  public void shouldReportEmailsSentBeforeAFailure() {
+    server.reject("eve@doe.com");
+    var john = new EmailClient.Email("1", "john@doe.com", "Hi", "One");
+    var eve = new EmailClient.Email("2", "eve@doe.com", "Hi", "Two");
+    var jane = new EmailClient.Email("3", "jane@doe.com", "Hi", "Three");
+
+    var failure = assertThrows(EmailClient.SendFailedException.class, () -> client.sendEmails(List.of(john, eve, jane)));
+
+    assertEquals(List.of(john), failure.sent());
+    assertEquals(1, server.received().size());
+  }
+
+  @Test
+  public void shouldRateLimitPerDomain() {
+    client.close();
+    client = new SmtpEmailClient(new SmtpEmailClient.Settings(
+        "localhost", server.port(), "agent@realestate.com", "", "", false,
+        1, Duration.ofSeconds(5), Duration.ofSeconds(30), 10, 1));
+
+    var start = System.nanoTime();
+    client.sendEmail("a@slow.com", "1", "one");
+    client.sendEmail("b@slow.com", "2", "two");
+    client.sendEmail("c@other.com", "3", "three");
+    var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    assertEquals(3, server.received().size());
+    // the second email to slow.com waits for a token, other domains don't
+    assertTrue(elapsed.toMillis() >= 90, "elapsed " + elapsed);
+    assertTrue(elapsed.toMillis() < 1000, "elapsed " + elapsed);
+  }
+}
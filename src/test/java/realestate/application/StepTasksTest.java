@@ -0,0 +1,93 @@
+package realestate.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StepTasksTest {
+
+  @Test
+  public void shouldRunTasksConcurrently() {
+    var started = new CountDownLatch(2);
+    try (var tasks = new StepTasks(Duration.ofSeconds(5))) {
+      // each task only completes once both are running
+      for (int i = 0; i < 2; i++) {
+        tasks.fork(() -> {
+          started.countDown();
+          try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+        });
+      }
+      tasks.join();
+    }
+    assertEquals(0, started.getCount());
+  }
+
+  @Test
+  public void shouldFailJoinWithTaskFailure() {
+    try (var tasks = new StepTasks(Duration.ofSeconds(5))) {
+      tasks.fork(() -> {});
+      tasks.fork(() -> { throw new IllegalStateException("boom"); });
+      var e = assertThrows(IllegalStateException.class, tasks::join);
+      assertEquals("boom", e.getMessage());
+    }
+  }
+
+  @Test
+  public void shouldCancelTasksWhenJoinTimesOut() {
+    var interrupted = new CountDownLatch(1);
+    var start = System.nanoTime();
+    try (var tasks = new StepTasks(Duration.ofMillis(50))) {
+      tasks.fork(() -> {
+        try {
+          Thread.sleep(Duration.ofMinutes(1));
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+      });
+      assertThrows(RuntimeException.class, tasks::join);
+    }
+    // closing doesn't wait for the hung task
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).toSeconds() < 5);
+    assertDoesNotThrow(() -> assertTrue(interrupted.await(5, TimeUnit.SECONDS)));
+  }
+
+  @Test
+  public void shouldNotWaitForeverForTasksNotJoinedOnClose() {
+    var start = System.nanoTime();
+    try (var tasks = new StepTasks(Duration.ofMillis(50))) {
+      tasks.fork(() -> {
+        try {
+          Thread.sleep(Duration.ofMinutes(1));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).toSeconds() < 5);
+  }
+
+  @Test
+  public void shouldWaitForTasksNotJoinedOnClose() {
+    var done = new AtomicBoolean();
+    try (var tasks = new StepTasks(Duration.ofSeconds(5))) {
+      tasks.fork(() -> {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        done.set(true);
+      });
+    }
+    assertTrue(done.get());
+  }
+}
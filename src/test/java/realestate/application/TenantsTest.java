@@ -0,0 +1,66 @@
+package realestate.application;
+
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.Test;
+import realestate.domain.AdmissionState;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TenantsTest {
+
+  private final Tenants tenants = new Tenants(ConfigFactory.parseString("""
+      realestate {
+        follow-up.after = 1m
+        llm-admission { max-concurrent = 20, tokens-per-minute = 200000, lease = 2m, shards = 2 }
+        tenants {
+          acme {
+            model = "realestate.models.acme"
+            instructions = "Sign emails as the Acme Homes team."
+            llm-admission.max-concurrent = 4
+            follow-up.after = 10m
+          }
+        }
+      }
+      """));
+
+  @Test
+  public void shouldUseServiceSettingsForDefaultAgency() {
+    var tenant = tenants.ofProspect("john@doe.com");
+
+    assertTrue(tenant.isDefault());
+    assertEquals("", tenant.model());
+    assertEquals(new AdmissionState.Limits(10, 100000, 120_000), tenant.admissionLimits());
+    assertEquals(Duration.ofMinutes(1), tenant.followUpAfter());
+  }
+
+  @Test
+  public void shouldFallBackToServiceSettingsForAgency() {
+    var tenant = tenants.ofProspect(Tenants.prospectId("acme", "john@doe.com"));
+
+    assertEquals("acme", tenant.id());
+    assertEquals("realestate.models.acme", tenant.model());
+    assertEquals("Sign emails as the Acme Homes team.", tenant.instructions());
+    // the agency's own limit, spread over the service wide number of shards
+    assertEquals(new AdmissionState.Limits(2, 100000, 120_000), tenant.admissionLimits());
+    assertEquals(Duration.ofMinutes(10), tenant.followUpAfter());
+  }
+
+  @Test
+  public void shouldNamespaceProspectsByAgency() {
+    assertEquals("john@doe.com", Tenants.prospectId(null, "john@doe.com"));
+    assertEquals("john@doe.com", Tenants.prospectId(Tenants.DEFAULT, "john@doe.com"));
+    assertEquals("acme:john@doe.com", Tenants.prospectId("acme", "john@doe.com"));
+    // a default agency sender can't pass for a prospect of another agency
+    assertFalse(Tenants.isValidSender("acme:john@doe.com"));
+    assertThrows(IllegalArgumentException.class, () -> Tenants.prospectId(null, "acme:john@doe.com"));
+
+    assertEquals("acme", Tenants.tenantId("acme:john@doe.com"));
+    assertEquals(Tenants.DEFAULT, Tenants.tenantId("john@doe.com"));
+    assertEquals("john@doe.com", Tenants.sender("acme:john@doe.com"));
+    assertEquals("john@doe.com", Tenants.sender("john@doe.com"));
+    // an agency no longer configured falls back to the default settings
+    assertTrue(tenants.ofProspect("gone:john@doe.com").isDefault());
+  }
+}
@@ -0,0 +1,120 @@
+package realestate.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionStateTest {
+
+  private static final AdmissionState.Limits LIMITS = new AdmissionState.Limits(2, 10_000, 120_000);
+
+  @Test
+  public void shouldLimitConcurrentCalls() {
+    var state = AdmissionState.EMPTY
+        .granted("a", 100, 0, LIMITS.leaseMillis())
+        .granted("b", 100, 0, LIMITS.leaseMillis());
+
+    assertFalse(state.canAdmit("c", 0, 100, 0, LIMITS));
+    assertTrue(state.released("a").canAdmit("c", 0, 100, 0, LIMITS));
+  }
+
+  @Test
+  public void shouldLimitTokensPerMinute() {
+    var state = AdmissionState.EMPTY.granted("a", 9_500, 0, LIMITS.leaseMillis()).released("a");
+
+    assertFalse(state.canAdmit("b", 0, 1_000, 0, LIMITS));
+    assertTrue(state.canAdmit("b", 0, 500, 0, LIMITS));
+    // a minute later the earlier usage no longer counts
+    assertTrue(state.expire(60_000).canAdmit("b", 0, 1_000, 0, LIMITS));
+  }
+
+  @Test
+  public void shouldLetOversizedCallsThroughWhenIdle() {
+    assertTrue(AdmissionState.EMPTY.canAdmit("a", 0, 50_000, 0, LIMITS));
+  }
+
+  @Test
+  public void shouldServeHigherPriorityFirst() {
+    var state = AdmissionState.EMPTY
+        .granted("a", 100, 0, LIMITS.leaseMillis())
+        .granted("b", 100, 0, LIMITS.leaseMillis())
+        .queued(new AdmissionState.Waiting("new-lead", 0, 100, 1, LIMITS.leaseMillis()))
+        .queued(new AdmissionState.Waiting("follow-up", 1, 100, 2, LIMITS.leaseMillis()))
+        .queued(new AdmissionState.Waiting("other-lead", 0, 100, 3, LIMITS.leaseMillis()));
+
+    assertEquals(
+        List.of("follow-up", "new-lead", "other-lead"),
+        state.queue().stream().map(AdmissionState.Waiting::workflowId).toList());
+
+    var admitted = state.released("a").admissible(LIMITS);
+    assertEquals(List.of("follow-up"), admitted.stream().map(AdmissionState.Waiting::workflowId).toList());
+  }
+
+  @Test
+  public void shouldNotOvertakeQueuedCallsOfSamePriority() {
+    var state = AdmissionState.EMPTY
+        .queued(new AdmissionState.Waiting("first", 0, 100, 1, LIMITS.leaseMillis()));
+
+    assertFalse(state.canAdmit("second", 0, 100, 2, LIMITS));
+    assertTrue(state.canAdmit("first", 0, 100, 2, LIMITS));
+    assertTrue(state.canAdmit("follow-up", 1, 100, 2, LIMITS));
+  }
+
+  @Test
+  public void shouldExpireLeasesOfCallsNeverReleased() {
+    var state = AdmissionState.EMPTY
+        .granted("a", 100, 0, LIMITS.leaseMillis())
+        .granted("b", 100, 0, LIMITS.leaseMillis())
+        .expire(LIMITS.leaseMillis());
+
+    assertTrue(state.inFlight().isEmpty());
+    assertTrue(state.canAdmit("c", 0, 100, 0, LIMITS));
+  }
+
+  @Test
+  public void shouldDropExpiredUsageAndLeases() {
+    var state = AdmissionState.EMPTY
+        .granted("a", 100, 0, LIMITS.leaseMillis())
+        .released("a")
+        .granted("b", 100, 30_000, 30_000 + LIMITS.leaseMillis());
+
+    assertSame(state, state.expire(59_999));
+    var expired = state.expire(60_000);
+    assertEquals(1, expired.usage().size());
+    assertEquals(List.of("b"), expired.inFlight().stream().map(AdmissionState.Lease::workflowId).toList());
+    assertTrue(state.expire(30_000 + LIMITS.leaseMillis()).inFlight().isEmpty());
+  }
+
+  @Test
+  public void shouldLetLowPriorityCallsAgeAheadOfNewerOnes() {
+    var waited = 31 * AdmissionState.AGING_MILLIS_PER_POINT;
+    var state = AdmissionState.EMPTY
+        .queued(new AdmissionState.Waiting("old-rental", 25, 100, 0, LIMITS.leaseMillis()))
+        .queued(new AdmissionState.Waiting("new-buyer", 55, 100, waited, waited + LIMITS.leaseMillis()));
+
+    // 30 points ahead, but queued 31 points of time later
+    assertEquals("old-rental", state.queue().getFirst().workflowId());
+    assertFalse(state.canAdmit("newest-buyer", 55, 100, waited, LIMITS));
+    assertTrue(state.canAdmit("urgent-buyer", 60, 100, waited, LIMITS));
+  }
+
+  @Test
+  public void shouldDropQueuedCallsThatStoppedAsking() {
+    var state = AdmissionState.EMPTY
+        .queued(new AdmissionState.Waiting("gone", 10, 100, 0, LIMITS.leaseMillis()))
+        .queued(new AdmissionState.Waiting("waiting", 0, 100, 1, 1 + LIMITS.leaseMillis()));
+
+    assertFalse(state.canAdmit("new-lead", 0, 100, 2, LIMITS));
+    var expired = state.expire(LIMITS.leaseMillis());
+    assertEquals(List.of("waiting"), expired.queue().stream().map(AdmissionState.Waiting::workflowId).toList());
+
+    // asking again keeps the call in its place
+    var refreshed = state.refreshed("gone", 2 * LIMITS.leaseMillis()).expire(LIMITS.leaseMillis() + 1);
+    assertEquals(
+        List.of("gone"),
+        refreshed.queue().stream().map(AdmissionState.Waiting::workflowId).toList());
+    assertEquals(0, refreshed.queue().getFirst().queuedAt());
+  }
+}
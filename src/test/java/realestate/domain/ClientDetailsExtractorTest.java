@@ -0,0 +1,88 @@
+package realestate.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientDetailsExtractorTest {
+
+  @Test
+  public void shouldExtractAllDetailsFromSubjectAndContent() {
+    var message = ProspectState.Message.UserMessage(
+        "john@doe.com",
+        "Looking to rent T2 in Porto",
+        "Hello, I am John Doe. My phone number is 911111111.");
+
+    var details = ClientDetailsExtractor.extract("john@doe.com", List.of(message));
+
+    assertEquals(
+        new ProspectState.ClientDetails("John Doe", "john@doe.com", "911111111", "Porto, Portugal", "apartment", "rent"),
+        details);
+    assertTrue(details.isComplete());
+  }
+
+  @Test
+  public void shouldKeepUnknownFieldsEmpty() {
+    var message = ProspectState.Message.UserMessage(
+        "jane@doe.com",
+        "Property inquiry",
+        "Hi, I'm looking for a house.");
+
+    var details = ClientDetailsExtractor.extract("jane@doe.com", List.of(message));
+
+    assertEquals(
+        new ProspectState.ClientDetails(null, "jane@doe.com", null, null, "house", null),
+        details);
+    assertFalse(details.isComplete());
+  }
+
+  @Test
+  public void shouldNotGuessAmbiguousTransactionType() {
+    var message = ProspectState.Message.UserMessage(
+        "jane@doe.com",
+        "Rent or buy",
+        "Not sure yet if I want to rent or buy in Lisbon.");
+
+    var details = ClientDetailsExtractor.extract("jane@doe.com", List.of(message));
+
+    assertNull(details.transactionType());
+    assertEquals("Lisbon, Portugal", details.location());
+  }
+
+  @Test
+  public void shouldPreferDetailsFromLaterMessages() {
+    var first = ProspectState.Message.UserMessage("jane@doe.com", "Flat in Madrid", "Looking to rent.");
+    var second = ProspectState.Message.UserMessage("jane@doe.com", "Re: Flat in Madrid", "Changed my mind, Barcelona please.");
+
+    var details = ClientDetailsExtractor.extract("jane@doe.com", List.of(first, second));
+
+    assertEquals("Barcelona, Spain", details.location());
+    assertEquals("apartment", details.type());
+    assertEquals("rent", details.transactionType());
+  }
+
+  @Test
+  public void shouldNormalizeTypesGivenByTheModel() {
+    assertEquals("buy", ClientDetailsExtractor.transactionTypeOf("Purchase"));
+    assertEquals("rent", ClientDetailsExtractor.transactionTypeOf("rental"));
+    assertNull(ClientDetailsExtractor.transactionTypeOf("rent or buy"));
+    assertNull(ClientDetailsExtractor.transactionTypeOf("investment"));
+
+    assertEquals("apartment", ClientDetailsExtractor.propertyTypeOf("2-bedroom Flat"));
+    assertEquals("house", ClientDetailsExtractor.propertyTypeOf("House"));
+    assertEquals("office", ClientDetailsExtractor.propertyTypeOf(" Office "));
+    assertNull(ClientDetailsExtractor.propertyTypeOf(" "));
+  }
+
+  @Test
+  public void shouldOnlyTakePlausibleNames() {
+    assertNull(ClientDetailsExtractor.extract("I Am Looking To Rent A Flat In Porto").name());
+    assertNull(ClientDetailsExtractor.extract("This Is An Enquiry").name());
+    assertEquals("John Doe", ClientDetailsExtractor.extract("Hi, I am John Doe And I Want A Flat").name());
+    assertEquals("Mary-Jane Watson", ClientDetailsExtractor.extract("my name is Mary-Jane Watson").name());
+    // too many words for a name
+    assertNull(ClientDetailsExtractor.extract("I am Very Happy Today Sunny Day").name());
+  }
+}
@@ -0,0 +1,46 @@
+package realestate.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeadScorerTest {
+
+  private static List<ProspectState.Message> email(String content) {
+    return List.of(ProspectState.Message.UserMessage("lead@example.com", "Enquiry", content));
+  }
+
+  @Test
+  public void shouldScoreBuyersAboveRentals() {
+    var buyer = new ProspectState.ClientDetails(null, "buyer@example.com", "911111111", "Lisbon, Portugal", "house", "buy");
+    var rental = new ProspectState.ClientDetails(null, "renter@example.com", null, "Porto, Portugal", "apartment", "rent");
+
+    var buyerScore = LeadScorer.score(buyer, email("I want to buy a house in Lisbon"), false, false);
+    var rentalScore = LeadScorer.score(rental, email("Any flat to rent in Porto?"), false, false);
+
+    assertEquals(LeadScorer.Priority.HIGH, buyerScore.priority());
+    assertEquals(LeadScorer.Priority.LOW, rentalScore.priority());
+    assertTrue(buyerScore.value() > rentalScore.value());
+  }
+
+  @Test
+  public void shouldRaiseScoreForReturningClientsRepliesAndUrgency() {
+    var details = new ProspectState.ClientDetails(null, "lead@example.com", null, null, null, null);
+    var base = LeadScorer.score(details, email("Hello"), false, false);
+
+    assertTrue(LeadScorer.score(details, email("Hello"), true, false).value() > base.value());
+    assertTrue(LeadScorer.score(details, email("Hello"), false, true).value() > base.value());
+    assertTrue(LeadScorer.score(details, email("I need a place ASAP"), false, false).value() > base.value());
+    assertEquals(LeadScorer.Priority.MEDIUM, LeadScorer.score(details, email("Urgent, please call me"), true, true).priority());
+  }
+
+  @Test
+  public void shouldIgnoreCaseOfDetails() {
+    var lower = new ProspectState.ClientDetails(null, "buyer@example.com", null, null, "house", "buy");
+    var upper = new ProspectState.ClientDetails(null, "buyer@example.com", null, null, "House", " BUY ");
+
+    assertEquals(LeadScorer.score(lower, email("Hello"), false, false), LeadScorer.score(upper, email("Hello"), false, false));
+  }
+}
@@ -0,0 +1,60 @@
+package realestate.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageLogTest {
+
+  private static ProspectState.Message message(int i) {
+    return ProspectState.Message.UserMessage("john@doe.com", "subject " + i, "content " + i);
+  }
+
+  @Test
+  public void shouldAppendWithoutChangingPreviousLogs() {
+    var expected = new ArrayList<ProspectState.Message>();
+    var logs = new ArrayList<MessageLog>();
+    var log = MessageLog.EMPTY;
+    for (int i = 0; i < 100; i++) {
+      log = log.append(message(i));
+      expected.add(message(i));
+      logs.add(log);
+    }
+
+    assertEquals(expected, log);
+    for (int i = 0; i < logs.size(); i++) {
+      assertEquals(expected.subList(0, i + 1), logs.get(i));
+    }
+  }
+
+  @Test
+  public void shouldCopyWhenAppendingToAnOlderLog() {
+    var base = MessageLog.EMPTY.append(message(0)).append(message(1));
+    var first = base.append(message(2));
+    var second = base.append(message(3));
+
+    assertEquals(List.of(message(0), message(1)), base);
+    assertEquals(List.of(message(0), message(1), message(2)), first);
+    assertEquals(List.of(message(0), message(1), message(3)), second);
+  }
+
+  @Test
+  public void shouldShareLogAcrossStateTransitions() {
+    var state = ProspectState.EMPTY.withEmail("john@doe.com").addUnreadMessage(message(0));
+    var next = state.waitingReply().markAllRead().followUpRequired();
+
+    assertSame(state.unreadMessages(), next.unreadMessages());
+    assertSame(MessageLog.of(state.unreadMessages()), state.unreadMessages());
+  }
+
+  @Test
+  public void shouldBeImmutable() {
+    var log = MessageLog.EMPTY.append(message(0));
+
+    assertThrows(UnsupportedOperationException.class, () -> log.add(message(1)));
+    assertThrows(UnsupportedOperationException.class, () -> log.set(0, message(1)));
+  }
+}
@@ -0,0 +1,82 @@
+package realestate.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProspectStateTest {
+
+  private static ProspectState.Message message(int i) {
+    return ProspectState.Message.UserMessage("john@doe.com", "subject " + i, "content " + i);
+  }
+
+  private static ProspectState thread(int messages) {
+    var state = ProspectState.EMPTY.withEmail("john@doe.com");
+    for (int i = 0; i < messages; i++) {
+      state = state.addUnreadMessage(message(i));
+    }
+    return state;
+  }
+
+  @Test
+  public void shouldOnlyReturnMessagesAddedAfterTheReadCursor() {
+    var state = thread(2).markAllRead().addUnreadMessage(message(2));
+
+    assertEquals(List.of(message(2)), state.newMessages());
+    assertTrue(state.markAllRead().newMessages().isEmpty());
+  }
+
+  @Test
+  public void shouldNotCompactWithinBudget() {
+    var state = thread(5).markAllRead();
+
+    assertSame(state, state.compact(10, 100_000, 2));
+  }
+
+  @Test
+  public void shouldCompactOldestMessagesKeepingTheLastOnes() {
+    var state = thread(12).markAllRead().compact(10, 100_000, 3);
+
+    assertEquals(3, state.unreadMessages().size());
+    assertEquals(message(9), state.unreadMessages().getFirst());
+    assertEquals(9, state.summary().compactedMessages());
+    assertEquals(9, state.summary().digests().size());
+    assertEquals(message(0).digest(), state.summary().digests().getFirst());
+    assertEquals(12, state.totalMessages());
+    assertEquals(3, state.readCursor());
+    assertFalse(state.isFirstContact());
+  }
+
+  @Test
+  public void shouldNeverCompactUnprocessedMessages() {
+    var state = thread(4).markAllRead();
+    for (int i = 4; i < 12; i++) {
+      state = state.addUnreadMessage(message(i));
+    }
+
+    var compacted = state.compact(10, 100_000, 2);
+
+    assertEquals(8, compacted.unreadMessages().size());
+    assertEquals(state.newMessages(), compacted.newMessages());
+  }
+
+  @Test
+  public void shouldCompactWhenOverTheSizeBudget() {
+    var state = thread(4).markAllRead().compact(10, 100, 1);
+
+    assertEquals(1, state.unreadMessages().size());
+    assertEquals(3, state.summary().compactedMessages());
+  }
+
+  @Test
+  public void shouldResetFailedAttemptsWhenResumed() {
+    var state = thread(1).agentCallFailed().agentCallFailed().error();
+
+    assertEquals(2, state.failedAttempts());
+    var resumed = state.resumed();
+    assertEquals(ProspectState.Status.COLLECT, resumed.status());
+    assertEquals(0, resumed.failedAttempts());
+  }
+}
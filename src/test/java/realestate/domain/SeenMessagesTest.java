@@ -0,0 +1,50 @@
+package realestate.domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SeenMessagesTest {
+
+  @Test
+  public void shouldRecogniseRecentIds() {
+    var seen = SeenMessages.EMPTY.add("a@mail").add("b@mail");
+
+    assertTrue(seen.contains("a@mail"));
+    assertTrue(seen.contains("b@mail"));
+    assertFalse(seen.contains("c@mail"));
+    assertSame(seen, seen.add("a@mail"));
+  }
+
+  @Test
+  public void shouldOnlyKeepTheMostRecentIds() {
+    var seen = SeenMessages.EMPTY;
+    for (int i = 0; i < 1000; i++) {
+      seen = seen.add("id-" + i);
+    }
+
+    assertEquals(SeenMessages.MAX_RECENT, seen.recent().size());
+    assertFalse(seen.contains("id-0"));
+    for (int i = 1000 - SeenMessages.MAX_RECENT; i < 1000; i++) {
+      assertTrue(seen.contains("id-" + i), "id-" + i);
+    }
+  }
+
+  @Test
+  public void shouldNotChangePreviousInstances() {
+    var first = SeenMessages.EMPTY.add("a@mail");
+    first.add("b@mail");
+
+    assertFalse(first.contains("b@mail"));
+    assertFalse(SeenMessages.EMPTY.contains("a@mail"));
+  }
+
+  @Test
+  public void shouldIgnoreRedeliveredEmails() {
+    var state = ProspectState.EMPTY.withEmail("john@doe.com").withSeen("<1@mail>");
+
+    assertTrue(state.hasSeen("<1@mail>"));
+    assertTrue(state.markAllRead().waitingReply().hasSeen("<1@mail>"));
+    assertFalse(state.hasSeen("<2@mail>"));
+  }
+}